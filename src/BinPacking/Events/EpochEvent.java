@@ -0,0 +1,30 @@
+package BinPacking.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted for every training epoch.
+ * <p>
+ * @version 1.0
+ */
+@Name("binpacking.Epoch")
+@Label("Training Epoch")
+@Category({"Bin Packing", "Training"})
+@Description("One pass of the trainer over the training set")
+public class EpochEvent extends Event {
+
+    @Label("Epoch")
+    public int epoch;
+
+    @Label("Instances")
+    public int nbInstances;
+
+    @Label("Temperature")
+    @Description("The temperature at the beginning of the epoch")
+    public double temperature;
+
+}
@@ -0,0 +1,29 @@
+package BinPacking.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted when a result file (CSV files, condition
+ * matrices, metrics) is written to disk.
+ * <p>
+ * @version 1.0
+ */
+@Name("binpacking.FileWrite")
+@Label("Result File Write")
+@Category({"Bin Packing", "I/O"})
+@Description("Writes one result file")
+public class FileWriteEvent extends Event {
+
+    @Label("File")
+    public String fileName;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+
+}
@@ -0,0 +1,32 @@
+package BinPacking.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted when an instance is loaded from disk.
+ * <p>
+ * @version 1.0
+ */
+@Name("binpacking.InstanceLoad")
+@Label("Instance Load")
+@Category({"Bin Packing", "I/O"})
+@Description("Reads and parses one instance file")
+public class InstanceLoadEvent extends Event {
+
+    @Label("Instance")
+    public String instance;
+
+    @Label("Items")
+    public int nbItems;
+
+    @Label("Capacity")
+    public int capacity;
+
+    @Label("Max Colors")
+    public int maxColors;
+
+}
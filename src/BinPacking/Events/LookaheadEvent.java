@@ -0,0 +1,43 @@
+package BinPacking.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted when the candidate heuristics are
+ * evaluated ahead to find the closest and the best heuristic during training.
+ * <p>
+ * @version 1.0
+ */
+@Name("binpacking.Lookahead")
+@Label("Lookahead")
+@Category({"Bin Packing", "Training"})
+@Description("Evaluation of every candidate heuristic on the current state")
+public class LookaheadEvent extends Event {
+
+    @Label("Instance")
+    public String instance;
+
+    @Label("Items")
+    @Description("The number of items left to be packed")
+    public int nbItems;
+
+    @Label("Candidates")
+    public int nbCandidates;
+
+    @Label("Closest Heuristic")
+    public String closestHeuristic;
+
+    @Label("Best Heuristic")
+    public String bestHeuristic;
+
+    @Label("Closest Cost")
+    public double closestCost;
+
+    @Label("Best Cost")
+    public double bestCost;
+
+}
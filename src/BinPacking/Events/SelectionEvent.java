@@ -0,0 +1,44 @@
+package BinPacking.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted when a hyper-heuristic selects the
+ * heuristic for one item. Only one every {@link #PERIOD} selections is
+ * recorded; the period is set with the system property
+ * <code>binpacking.jfr.selectionPeriod</code> (64 by default).
+ * <p>
+ * @version 1.0
+ */
+@Name("binpacking.Selection")
+@Label("Heuristic Selection")
+@Category({"Bin Packing", "Solver"})
+@Description("Selection of the heuristic for one item (sampled)")
+public class SelectionEvent extends Event {
+
+    /**
+     * The number of selections between two recorded events.
+     */
+    public static final int PERIOD = Math.max(1, Integer.getInteger("binpacking.jfr.selectionPeriod", 64));
+
+    @Label("Instance")
+    public String instance;
+
+    @Label("Heuristic")
+    public String heuristic;
+
+    @Label("Step")
+    public int step;
+
+    @Label("Items")
+    @Description("The number of items left to be packed")
+    public int nbItems;
+
+    @Label("Open Bins")
+    public int nbOpenBins;
+
+}
@@ -0,0 +1,37 @@
+package BinPacking.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted when a solver packs all the items of an
+ * instance, either with one heuristic or with a hyper-heuristic.
+ * <p>
+ * @version 1.0
+ */
+@Name("binpacking.Solve")
+@Label("Solve")
+@Category({"Bin Packing", "Solver"})
+@Description("Packs all the items of an instance")
+public class SolveEvent extends Event {
+
+    @Label("Instance")
+    public String instance;
+
+    @Label("Heuristic")
+    @Description("The heuristic or the hyper-heuristic used to solve the instance")
+    public String heuristic;
+
+    @Label("Items")
+    public int nbItems;
+
+    @Label("Bins")
+    public int nbBins;
+
+    @Label("Open Bins")
+    public int nbOpenBins;
+
+}
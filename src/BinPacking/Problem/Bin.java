@@ -1,6 +1,7 @@
 package BinPacking.Problem;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -52,6 +53,15 @@ public class Bin {
         return capacity;
     }
 
+    /**
+     * Returns the items packed in this bin.
+     * <p>
+     * @return The items packed in this bin.
+     */
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
     /**
      * Returns the different colors of the items packed in this bin.
      * <p>
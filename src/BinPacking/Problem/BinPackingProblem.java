@@ -1,6 +1,11 @@
 package BinPacking.Problem;
 
+import BinPacking.Events.InstanceLoadEvent;
 import BinPacking.Utils.Files;
+import BinPacking.Utils.InstanceGenerator;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.StringTokenizer;
 
@@ -16,6 +21,7 @@ public class BinPackingProblem {
     private final int maxCapacity, maxColors;
     private final String fileName;
     private final Item[] items;
+    private volatile long fingerprint;
 
     /**
      * Creates a new instance of <code>BinPackingProblem</code>.
@@ -23,44 +29,167 @@ public class BinPackingProblem {
      * @param fileName The name of the file that contains this instance.
      */
     public BinPackingProblem(String fileName) {
-        int nbItems, size, classId;
-        String text;
-        StringTokenizer lines, tmp;
-        text = Files.load(fileName);
-        lines = new StringTokenizer(text, "\n");
-        if (lines.countTokens() <= 2) {
-            System.out.println("The instance \'" + fileName + "\'cannot be loaded.");
+        this(load(fileName));
+    }
+
+    private BinPackingProblem(BinPackingProblem problem) {
+        fileName = problem.fileName;
+        maxCapacity = problem.maxCapacity;
+        maxColors = problem.maxColors;
+        items = problem.items;
+    }
+
+    /**
+     * Reads an instance from a file and halts the system if the file is not
+     * a valid instance.
+     * <p>
+     * @param fileName The name of the file that contains the instance.
+     * @return The instance stored in the file.
+     */
+    private static BinPackingProblem load(String fileName) {
+        BinPackingProblem problem;
+        InstanceLoadEvent event;
+        event = new InstanceLoadEvent();
+        event.begin();
+        problem = null;
+        try {
+            problem = read(fileName);
+        } catch (IllegalArgumentException e) {
+            System.out.println("The instance \'" + fileName + "\' cannot be loaded.");
+            System.out.println("Exception: " + (e.getCause() != null ? e.getCause() : e).toString());
             System.out.println("The system will halt.");
             System.exit(1);
-            maxCapacity = -1;
-            maxColors = -1;
-            items = null;
-        } else {
-            /*
-             * Reads the number of items.
-             */
+        }
+        problem.commit(event);
+        return problem;
+    }
+
+    /**
+     * Creates a new instance of <code>BinPackingProblem</code> from items that
+     * are already in memory.
+     * <p>
+     * @param name The name of this instance.
+     * @param maxCapacity The maximum capacity of the bins.
+     * @param maxColors The maximum number of different colors allowed to be
+     * packed in a bin.
+     * @param items The items of this instance.
+     */
+    public BinPackingProblem(String name, int maxCapacity, int maxColors, Item[] items) {
+        this.fileName = name;
+        this.maxCapacity = maxCapacity;
+        this.maxColors = maxColors;
+        this.items = new Item[items.length];
+        System.arraycopy(items, 0, this.items, 0, items.length);
+    }
+
+    /**
+     * Creates a new instance of <code>BinPackingProblem</code> from the
+     * contents of a <code>.bpp</code> file.
+     * <p>
+     * @param name The name of this instance.
+     * @param text The contents of the file (the number of items, the bin
+     * size, the bin cardinality and one line with the size and the color of
+     * every item).
+     * @return The instance described by the text.
+     * @throws IllegalArgumentException If the text is not a valid instance.
+     */
+    public static BinPackingProblem parse(String name, String text) {
+        int nbItems, maxCapacity, maxColors;
+        Item[] items;
+        StringTokenizer lines, tmp;
+        lines = new StringTokenizer(text, "\n");
+        try {
             nbItems = (int) Double.parseDouble(lines.nextToken().trim());
-            items = new Item[nbItems];
-            /*
-             * Reads the bin size.
-             */
             maxCapacity = (int) Double.parseDouble(lines.nextToken().trim());
-            /*
-             * Reads the bin cardinality.
-             */
             maxColors = (int) Double.parseDouble(lines.nextToken().trim());
-
             /*
-             * Reads the items within the instance.
+             * The number of items is checked against the lines left before allocating them.
              */
+            if (nbItems < 0 || nbItems > lines.countTokens()) {
+                throw new IllegalArgumentException("The instance \'" + name + "\' declares " + nbItems + " items but has "
+                        + lines.countTokens() + " item lines.");
+            }
+            items = new Item[nbItems];
             for (int i = 0; i < nbItems; i++) {
                 tmp = new StringTokenizer(lines.nextToken());
-                size = Integer.parseInt(tmp.nextToken().trim());
-                classId = Integer.parseInt(tmp.nextToken().trim());
-                items[i] = new Item(size, classId);
+                items[i] = new Item(Integer.parseInt(tmp.nextToken().trim()), Integer.parseInt(tmp.nextToken().trim()));
             }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("The instance \'" + name + "\' cannot be parsed.", e);
+        }
+        return new BinPackingProblem(name, maxCapacity, maxColors, items);
+    }
+
+    /**
+     * Reads an instance from a <code>.bpp</code> file (or a file in the binary
+     * format written by <code>InstanceGenerator</code>, which is mapped into
+     * memory). Unlike the constructor, which halts the system, this method
+     * reports any problem with the file by throwing an exception, so it can be
+     * used by services that must keep running.
+     * <p>
+     * @param fileName The name of the file that contains the instance.
+     * @return The instance stored in the file.
+     * @throws IllegalArgumentException If the file cannot be read or is not a
+     * valid instance.
+     */
+    public static BinPackingProblem read(String fileName) {
+        try {
+            if (fileName.endsWith(InstanceGenerator.BINARY_EXTENSION)) {
+                return decode(fileName, Files.open(fileName));
+            }
+            return parse(fileName.substring(fileName.lastIndexOf('/') + 1), Files.read(fileName));
+        } catch (UncheckedIOException e) {
+            throw new IllegalArgumentException("The instance \'" + fileName + "\' cannot be read.", e.getCause());
+        }
+    }
+
+    /**
+     * Decodes an instance stored in the binary format written by
+     * <code>InstanceGenerator</code>.
+     * <p>
+     * @param fileName The name of the file that contains the instance.
+     * @param data The contents of the file.
+     * @return The instance stored in the file.
+     * @throws IllegalArgumentException If the contents are not a valid
+     * instance or are truncated.
+     */
+    private static BinPackingProblem decode(String fileName, ByteBuffer data) {
+        int nbItems, maxCapacity, maxColors;
+        Item[] items;
+        try {
+            if (data.getInt() != InstanceGenerator.BINARY_MAGIC || data.getInt() != InstanceGenerator.BINARY_VERSION) {
+                throw new IllegalArgumentException("The file \'" + fileName + "\' does not contain an instance (or its version is not supported).");
+            }
+            nbItems = data.getInt();
+            maxCapacity = data.getInt();
+            maxColors = data.getInt();
+            if (nbItems < 0 || data.remaining() < 8L * nbItems) {
+                throw new IllegalArgumentException("The instance \'" + fileName + "\' is truncated.");
+            }
+            items = new Item[nbItems];
+            for (int i = 0; i < nbItems; i++) {
+                items[i] = new Item(data.getInt(), data.getInt());
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("The instance \'" + fileName + "\' is truncated.");
+        }
+        return new BinPackingProblem(fileName.substring(fileName.lastIndexOf('/') + 1), maxCapacity, maxColors, items);
+    }
+
+    /**
+     * Completes the flight recorder event of the load of this instance and
+     * commits it.
+     * <p>
+     * @param event The event started when the load began.
+     */
+    private void commit(InstanceLoadEvent event) {
+        if (event.shouldCommit()) {
+            event.instance = fileName;
+            event.nbItems = items.length;
+            event.capacity = maxCapacity;
+            event.maxColors = maxColors;
+            event.commit();
         }
-        this.fileName = fileName.substring(fileName.lastIndexOf('/') + 1);
     }
 
     /**
@@ -111,6 +240,33 @@ public class BinPackingProblem {
         return tmp;
     }
 
+    /**
+     * Returns a 64-bit fingerprint of the content of this instance (capacity,
+     * colors and items, regardless of its name). Instances with the same
+     * content have the same fingerprint.
+     * <p>
+     * @return A 64-bit fingerprint of the content of this instance.
+     */
+    public long getFingerprint() {
+        long hash;
+        hash = fingerprint;
+        if (hash == 0) {
+            hash = mix(maxCapacity * 0x9E3779B97F4A7C15L + maxColors);
+            for (Item item : items) {
+                hash = mix(hash ^ (((long) item.getSize() << 32) | (item.getColor() & 0xFFFFFFFFL)));
+            }
+            hash = hash == 0 ? 1 : hash;
+            fingerprint = hash;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Returns the string representation of this bin packing problem.
      * <p>
@@ -0,0 +1,445 @@
+package BinPacking.Server;
+
+import BinPacking.Problem.Bin;
+import BinPacking.Problem.BinPackingProblem;
+import BinPacking.Problem.Item;
+import BinPacking.Solver.BinPackingSolver;
+import BinPacking.Solver.Feature;
+import BinPacking.Solver.Heuristic;
+import BinPacking.Solver.HyperHeuristic;
+import BinPacking.Solver.HyperHeuristicModel;
+import BinPacking.Utils.CorpusArchive;
+import BinPacking.Utils.ResultWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides a long-running local service that solves bin packing problem
+ * instances, so the cost of starting the JVM, warming up the compiler and
+ * loading the models is paid only once.
+ * <p>
+ * The service listens on the loopback interface and answers
+ * <code>POST /solve</code> (or <code>GET /solve</code> with paths). The
+ * instances are given either in the body of the request (the contents of a
+ * <code>.bpp</code> file) or with one or more <code>path</code> parameters
+ * (an instance, or an archive whose instances are all solved).
+ * The solver is chosen with the parameter <code>heuristic</code> (the name of
+ * a heuristic) or <code>model</code> (the path of a condition matrix saved by
+ * <code>saveCondMatrix</code>, which is loaded once and kept in memory). With
+ * <code>assignment=true</code> the bin of every item is also returned. The
+ * answer is plain text, one block per instance:
+ * <pre>
+ * instance 0.bpp
+ * bins 14
+ * avgw 1.6154
+ * assignment 0 0 1 2 ...
+ * </pre>
+ * Items that were not packed have the bin -1.
+ * <p>
+ * Every connection is handled by its own virtual thread when the runtime
+ * supports them (or by a cached thread pool otherwise). Small instances are
+ * not solved by the connection threads: they are queued and solved in batches
+ * by a dispatcher that waits a few milliseconds to gather requests and then
+ * solves the whole batch in parallel.
+ * <p>
+ * @version 1.0
+ */
+public class SolveServer {
+
+    /**
+     * The default port of the service.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    private final int batchSize, batchItems;
+    private final long batchDelay;
+    private final HttpServer server;
+    private final ExecutorService connections;
+    private final Map<String, HyperHeuristic> models;
+    private final BlockingQueue<Job> queue;
+    private final Thread dispatcher;
+    private volatile boolean running;
+
+    /**
+     * Creates a new instance of <code>SolveServer</code> with the default
+     * batching parameters (up to 64 instances of at most 10000 items, gathered
+     * for at most 2 milliseconds).
+     * <p>
+     * @param port The port where the service will listen.
+     * @throws IOException If the port cannot be opened.
+     */
+    public SolveServer(int port) throws IOException {
+        this(port, 64, 10000, 2);
+    }
+
+    /**
+     * Creates a new instance of <code>SolveServer</code>.
+     * <p>
+     * @param port The port where the service will listen.
+     * @param batchSize The maximum number of instances solved in one batch.
+     * @param batchItems The maximum number of items of an instance to be
+     * solved in a batch (larger instances are solved as soon as they arrive).
+     * @param batchDelay The maximum time (in milliseconds) to wait for more
+     * instances before solving a batch.
+     * @throws IOException If the port cannot be opened.
+     */
+    public SolveServer(int port, int batchSize, int batchItems, long batchDelay) throws IOException {
+        this.batchSize = batchSize;
+        this.batchItems = batchItems;
+        this.batchDelay = batchDelay;
+        models = new ConcurrentHashMap();
+        queue = new LinkedBlockingQueue();
+        connections = newThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(connections);
+        server.createContext("/solve", this::handle);
+        dispatcher = new Thread(this::dispatch, "solve-batcher");
+        dispatcher.setDaemon(true);
+    }
+
+    /**
+     * Starts the service.
+     */
+    public void start() {
+        running = true;
+        dispatcher.start();
+        server.start();
+    }
+
+    /**
+     * Stops the service.
+     */
+    public void stop() {
+        running = false;
+        server.stop(0);
+        dispatcher.interrupt();
+        connections.shutdownNow();
+    }
+
+    /**
+     * Returns the port where the service is listening.
+     * <p>
+     * @return The port where the service is listening.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns an executor that runs every task in a new virtual thread, or a
+     * cached thread pool if the runtime does not support virtual threads.
+     * <p>
+     * @return An executor that runs every task in its own thread.
+     */
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Answers one request and always closes the exchange.
+     * <p>
+     * @param exchange The request and its response.
+     * @throws IOException If the response cannot be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            answer(exchange);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answers one request. Invalid requests are answered with the status 400
+     * and unexpected errors while solving with the status 500.
+     * <p>
+     * @param exchange The request and its response.
+     * @throws IOException If the request cannot be read or the response
+     * cannot be sent.
+     */
+    private void answer(HttpExchange exchange) throws IOException {
+        int status;
+        byte[] body;
+        String response;
+        Map<String, List<String>> parameters;
+        List<BinPackingProblem> problems;
+        List<CompletableFuture<String>> results;
+        Heuristic heuristic;
+        HyperHeuristic hyperHeuristic;
+        boolean assignment;
+        StringBuilder string;
+        try {
+            parameters = parse(exchange.getRequestURI().getRawQuery());
+            body = exchange.getRequestBody().readAllBytes();
+            heuristic = null;
+            hyperHeuristic = null;
+            if (parameters.containsKey("model")) {
+                hyperHeuristic = getModel(parameters.get("model").get(0));
+            } else {
+                heuristic = Heuristic.valueOf(get(parameters, "heuristic", "FIRST_FIT").toUpperCase());
+            }
+            assignment = Boolean.parseBoolean(get(parameters, "assignment", "false"));
+            problems = new ArrayList();
+            if (parameters.containsKey("path")) {
+                for (String path : parameters.get("path")) {
+                    if (!new File(path).isFile()) {
+                        throw new IllegalArgumentException("The instance \'" + path + "\' does not exist.");
+                    }
+                    if (CorpusArchive.isArchive(path)) {
+                        for (BinPackingProblem problem : new CorpusArchive(path)) {
+                            problems.add(problem);
+                        }
+                    } else {
+                        problems.add(BinPackingProblem.read(path));
+                    }
+                }
+            }
+            if (body.length > 0) {
+                problems.add(BinPackingProblem.parse(get(parameters, "name", "request"), new String(body, StandardCharsets.UTF_8)));
+            }
+            if (problems.isEmpty()) {
+                throw new IllegalArgumentException("No instance was provided.");
+            }
+            results = new ArrayList();
+            for (BinPackingProblem problem : problems) {
+                results.add(submit(new Job(problem, heuristic, hyperHeuristic, assignment)));
+            }
+            string = new StringBuilder();
+            for (CompletableFuture<String> result : results) {
+                string.append(result.get()).append("\n\n");
+            }
+            response = string.toString().trim() + "\n";
+            status = 200;
+        } catch (IllegalArgumentException e) {
+            response = "error " + (e.getCause() != null ? e.getCause() : e) + "\n";
+            status = 400;
+        } catch (ExecutionException e) {
+            response = "error " + e.getCause() + "\n";
+            status = e.getCause() instanceof IllegalArgumentException ? 400 : 500;
+        } catch (RuntimeException e) {
+            response = "error " + e + "\n";
+            status = 500;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response = "error interrupted\n";
+            status = 503;
+        }
+        body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Returns the model stored in a condition matrix, loading it only the
+     * first time it is requested.
+     * <p>
+     * @param fileName The name of the file that contains the condition matrix.
+     * @return The model stored in the condition matrix.
+     */
+    private HyperHeuristic getModel(String fileName) {
+        String key;
+        if (!new File(fileName).isFile()) {
+            throw new IllegalArgumentException("The model \'" + fileName + "\' does not exist.");
+        }
+        key = new File(fileName).getAbsolutePath();
+        return models.computeIfAbsent(key, HyperHeuristicModel::load);
+    }
+
+    /**
+     * Solves a job, in the current thread if it is large or in the next batch
+     * if it is small.
+     * <p>
+     * @param job The job to solve.
+     * @return The future result of the job.
+     */
+    private CompletableFuture<String> submit(Job job) {
+        if (job.problem.getNbItems() > batchItems) {
+            job.result.complete(solve(job));
+        } else {
+            queue.add(job);
+        }
+        return job.result;
+    }
+
+    /**
+     * Gathers the queued jobs in batches and solves every batch in parallel.
+     */
+    private void dispatch() {
+        long deadline, wait;
+        Job job;
+        List<Job> batch;
+        batch = new ArrayList();
+        while (running) {
+            try {
+                batch.add(queue.take());
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchDelay);
+                while (batch.size() < batchSize) {
+                    wait = deadline - System.nanoTime();
+                    job = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (job == null) {
+                        break;
+                    }
+                    batch.add(job);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            batch.parallelStream().forEach(item -> {
+                try {
+                    item.result.complete(solve(item));
+                } catch (RuntimeException e) {
+                    item.result.completeExceptionally(e);
+                }
+            });
+            batch.clear();
+        }
+    }
+
+    /**
+     * Solves one job and returns its result as text.
+     * <p>
+     * @param job The job to solve.
+     * @return The result of the job.
+     */
+    private static String solve(Job job) {
+        int bin;
+        int[] bins;
+        Item[] items;
+        List<Bin> solution;
+        BinPackingSolver solver;
+        StringBuilder string;
+        Map<Item, Integer> positions;
+        items = job.problem.getItems();
+        solver = new BinPackingSolver(job.problem);
+        if (job.hyperHeuristic != null) {
+            solution = solver.solve(job.hyperHeuristic);
+        } else {
+            solution = solver.solve(job.heuristic);
+        }
+        string = new StringBuilder();
+        string.append("instance ").append(job.problem.getFileName()).append("\n");
+        string.append("bins ").append(solver.getNbBins()).append("\n");
+        ResultWriter.append(string.append("avgw "), solver.getFeature(Feature.AVGW), 4);
+        if (job.assignment) {
+            positions = new IdentityHashMap(items.length);
+            for (int i = 0; i < items.length; i++) {
+                positions.put(items[i], i);
+            }
+            bins = new int[items.length];
+            Arrays.fill(bins, -1);
+            bin = 0;
+            for (Bin tmp : solution) {
+                for (Item item : tmp.getItems()) {
+                    bins[positions.get(item)] = bin;
+                }
+                bin++;
+            }
+            string.append("\nassignment");
+            for (int i = 0; i < bins.length; i++) {
+                string.append(' ').append(bins[i]);
+            }
+        }
+        return string.toString();
+    }
+
+    /**
+     * Returns the parameters of a query string.
+     * <p>
+     * @param query The query string (can be <code>null</code>).
+     * @return The values of every parameter in the query string.
+     */
+    private static Map<String, List<String>> parse(String query) {
+        int index;
+        String name, value;
+        Map<String, List<String>> parameters;
+        parameters = new ConcurrentHashMap();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            index = pair.indexOf('=');
+            name = URLDecoder.decode(index < 0 ? pair : pair.substring(0, index), StandardCharsets.UTF_8);
+            value = index < 0 ? "" : URLDecoder.decode(pair.substring(index + 1), StandardCharsets.UTF_8);
+            parameters.computeIfAbsent(name, key -> new ArrayList()).add(value);
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns the first value of a parameter.
+     * <p>
+     * @param parameters The parameters of the request.
+     * @param name The name of the parameter.
+     * @param defaultValue The value returned if the parameter is missing.
+     * @return The first value of the parameter.
+     */
+    private static String get(Map<String, List<String>> parameters, String name, String defaultValue) {
+        List<String> values;
+        values = parameters.get(name);
+        return values == null ? defaultValue : values.get(0);
+    }
+
+    /**
+     * One instance to solve and the place where its result is delivered.
+     */
+    private static class Job {
+
+        private final BinPackingProblem problem;
+        private final Heuristic heuristic;
+        private final HyperHeuristic hyperHeuristic;
+        private final boolean assignment;
+        private final CompletableFuture<String> result;
+
+        Job(BinPackingProblem problem, Heuristic heuristic, HyperHeuristic hyperHeuristic, boolean assignment) {
+            this.problem = problem;
+            this.heuristic = heuristic;
+            this.hyperHeuristic = hyperHeuristic;
+            this.assignment = assignment;
+            result = new CompletableFuture();
+        }
+    }
+
+    /**
+     * Starts the service. The only (optional) argument is the port.
+     * <p>
+     * @param args The command line arguments.
+     * @throws IOException If the port cannot be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        SolveServer server;
+        server = new SolveServer(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+        server.start();
+        System.out.println("Listening on http://127.0.0.1:" + server.getPort() + "/solve");
+    }
+
+}
@@ -1,26 +1,68 @@
 package BinPacking.Solver;
 
+import BinPacking.Events.SelectionEvent;
+import BinPacking.Events.SolveEvent;
 import BinPacking.Problem.BinPackingProblem;
 import BinPacking.Problem.Item;
 import BinPacking.Problem.Bin;
-import BinPacking.Utils.Statistical;
+import BinPacking.Utils.Histogram;
+import BinPacking.Utils.Metrics;
+import BinPacking.Utils.RunningStatistics;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Provides the methods to solve the one dimensional class constrained bin
  * packing problem.
  * <p>
+ * Any change that alters the solutions of the heuristics must increase
+ * {@link BinPacking.Utils.ResultCache#VERSION}, or the cached results of the
+ * previous version will keep being used.
+ * <p>
  * @author José Carlos Ortiz Bayliss (jcobayliss@tec.mx)
  * @version 1.0
  */
 public class BinPackingSolver {
 
+    /*
+     * Metrics recorded by all the solvers (only when the metrics are enabled).
+     */
+    private static final LongAdder[] SELECTIONS = new LongAdder[Heuristic.values().length];
+    private static final Histogram[] FEATURE_TIME = new Histogram[Feature.values().length];
+    private static final LongAdder BINS_OPENED = Metrics.counter("solver.bins.opened");
+    private static final LongAdder BINS_CLOSED = Metrics.counter("solver.bins.closed");
+    private static final Histogram BINS_SCANNED = Metrics.histogram("solver.selectBin.scanned");
+    private static final Histogram SELECTION_TIME = Metrics.histogram("solver.selection.nanos");
+    private static final Histogram SOLVE_TIME = Metrics.histogram("solver.solve.nanos");
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    static {
+        for (Heuristic heuristic : Heuristic.values()) {
+            SELECTIONS[heuristic.ordinal()] = Metrics.counter("heuristic." + heuristic + ".selections");
+        }
+        for (Feature feature : Feature.values()) {
+            FEATURE_TIME[feature.ordinal()] = Metrics.histogram("feature." + feature + ".nanos");
+        }
+    }
+
     private final int maxCapacity, maxColors;
+    private final String name;
     private final List<Bin> openBins, closedBins;
     private final List<Item> items;
+    private final FeatureVector features;
+    private final int nbTotalItems;
+    private final long fingerprint;
+    /*
+     * Incremental hash of the state (only maintained after the first call to getStateHash).
+     */
+    private Map<Bin, Long> binSeeds;
+    private long stateHash;
+    private int nbOpened;
 
     /**
      * Creates a new instance of <code>BinPackingSolver</code>.
@@ -30,11 +72,51 @@ public class BinPackingSolver {
     public BinPackingSolver(BinPackingProblem problem) {
         maxCapacity = problem.getMaxCapacity();
         maxColors = problem.getMaxColors();
+        name = problem.getFileName();
         openBins = new LinkedList();
         closedBins = new LinkedList();
         items = new ArrayList(problem.getNbItems());
         items.addAll(Arrays.asList(problem.getItems()));
+        features = new FeatureVector(this);
+        nbTotalItems = problem.getNbItems();
+        fingerprint = problem.getFingerprint();
         openBins.add(new Bin(maxCapacity, maxColors));
+        if (Metrics.isEnabled()) {
+            BINS_OPENED.increment();
+        }
+    }
+
+    /**
+     * Creates a new instance of <code>BinPackingSolver</code> from an existing
+     * instance (copy constructor). The copy continues from the current state of
+     * the solver provided as argument, and both solvers can be used
+     * independently afterwards. The closed bins are shared, since they are
+     * never modified.
+     * <p>
+     * @param solver The instance of <code>BinPackingSolver</code> to copy to
+     * this instance.
+     */
+    public BinPackingSolver(BinPackingSolver solver) {
+        maxCapacity = solver.maxCapacity;
+        maxColors = solver.maxColors;
+        name = solver.name;
+        openBins = new LinkedList();
+        closedBins = new LinkedList(solver.closedBins);
+        items = new ArrayList(solver.items);
+        features = new FeatureVector(this);
+        nbTotalItems = solver.nbTotalItems;
+        fingerprint = solver.fingerprint;
+        if (solver.binSeeds != null) {
+            binSeeds = new IdentityHashMap();
+            stateHash = solver.stateHash;
+            nbOpened = solver.nbOpened;
+        }
+        for (Bin bin : solver.openBins) {
+            openBins.add(new Bin(bin));
+            if (binSeeds != null) {
+                binSeeds.put(openBins.get(openBins.size() - 1), solver.binSeeds.get(bin));
+            }
+        }
     }
 
     /**
@@ -44,26 +126,25 @@ public class BinPackingSolver {
      * @return A solution to the bin packing problem instance.
      */
     public List<Bin> solve(Heuristic heuristic) {
-        Bin bin;
+        int nbItems;
+        long start;
         Item item;
         List<Bin> tmp;
+        SolveEvent event;
+        nbItems = items.size();
+        event = new SolveEvent();
+        event.begin();
+        start = Metrics.isEnabled() ? System.nanoTime() : 0;
         while (items.size() > 1) {
-            item = items.remove(0);
+            item = next();
             if (item.getSize() <= maxCapacity) {
-                bin = selectBin(heuristic, item);
-                /*
-                 * The item is packed.
-                 */
-                bin.pack(item);
-                /*
-                 * Full bins cannot longer be used.
-                 */
-                if (bin.getCapacity() == 0) {
-                    closedBins.add(bin);
-                    openBins.remove(bin);
-                }
+                place(selectBin(heuristic, item), item);
             }
         }
+        if (Metrics.isEnabled()) {
+            SOLVE_TIME.record(System.nanoTime() - start);
+        }
+        commit(event, heuristic.toString(), nbItems);
         tmp = new ArrayList(closedBins);
         tmp.addAll(openBins);
         return tmp;
@@ -77,26 +158,115 @@ public class BinPackingSolver {
      * @return A solution to the bin packing problem instance.
      */
     public List<Bin> solve(HyperHeuristic hyperHeuristic) {
-        Bin bin;
+        return solve(hyperHeuristic, null);
+    }
+
+    /**
+     * Solves a bin packing problem instance by using a heuristic selector and
+     * records every decision.
+     * <p>
+     * @param hyperHeuristic The hyper-heuristic to be used to solve the bin
+     * packing problem instance.
+     * @param recorder The recorder where the decisions are stored (see
+     * {@link TraceRecorder#getTrace()}), or <code>null</code> to not record
+     * them.
+     * @return A solution to the bin packing problem instance.
+     */
+    public List<Bin> solve(HyperHeuristic hyperHeuristic, TraceRecorder recorder) {
+        int nbItems, step;
+        long start, selectionStart;
         Item item;
+        Bin bin;
         List<Bin> tmp;
         Heuristic heuristic;
+        SolveEvent event;
+        SelectionEvent selection;
+        nbItems = items.size();
+        step = 0;
+        event = new SolveEvent();
+        event.begin();
+        start = Metrics.isEnabled() ? System.nanoTime() : 0;
+        if (recorder != null) {
+            recorder.start(name, fingerprint);
+        }
         while (items.size() > 1) {
-            item = items.remove(0);
+            item = next();
             if (item.getSize() <= maxCapacity) {
-                heuristic = hyperHeuristic.getHeuristic(this);
-                bin = selectBin(heuristic, item);
                 /*
-                 * The item is packed.
+                 * Only one every SelectionEvent.PERIOD selections is recorded.
                  */
-                bin.pack(item);
+                selection = null;
+                if (step++ % SelectionEvent.PERIOD == 0) {
+                    selection = new SelectionEvent();
+                    selection.begin();
+                }
+                if (Metrics.isEnabled()) {
+                    selectionStart = System.nanoTime();
+                    heuristic = hyperHeuristic.getHeuristic(this);
+                    SELECTION_TIME.record(System.nanoTime() - selectionStart);
+                    SELECTIONS[heuristic.ordinal()].increment();
+                } else {
+                    heuristic = hyperHeuristic.getHeuristic(this);
+                }
+                if (selection != null && selection.shouldCommit()) {
+                    selection.instance = name;
+                    selection.heuristic = heuristic.toString();
+                    selection.step = step - 1;
+                    selection.nbItems = items.size();
+                    selection.nbOpenBins = openBins.size();
+                    selection.commit();
+                }
+                if (recorder == null) {
+                    place(selectBin(heuristic, item), item);
+                    continue;
+                }
                 /*
-                 * Full bins cannot longer be used.
+                 * The features are recorded before a new bin changes the state.
                  */
-                if (bin.getCapacity() == 0) {
-                    closedBins.add(bin);
-                    openBins.remove(bin);
+                recorder.record(nbTotalItems - items.size() - 1, heuristic, features);
+                bin = selectBin(heuristic, item);
+                recorder.recordBin(openBins.indexOf(bin));
+                place(bin, item);
+            }
+        }
+        if (recorder != null) {
+            recorder.finish();
+        }
+        if (Metrics.isEnabled()) {
+            SOLVE_TIME.record(System.nanoTime() - start);
+        }
+        commit(event, hyperHeuristic.getClass().getSimpleName(), nbItems);
+        tmp = new ArrayList(closedBins);
+        tmp.addAll(openBins);
+        return tmp;
+    }
+
+    /**
+     * Rebuilds the solution recorded in a trace, packing every item in the
+     * same bin without computing any feature or selecting any heuristic.
+     * <p>
+     * @param trace The decisions recorded while solving the same instance.
+     * @return The solution recorded in the trace.
+     * @throws IllegalArgumentException If the trace was recorded for another
+     * instance or this solver is not in the initial state.
+     */
+    public List<Bin> replay(DecisionTrace trace) {
+        int bin;
+        Item item;
+        List<Bin> tmp;
+        DecisionTrace.Reader reader;
+        if (trace.getFingerprint() != fingerprint || items.size() != nbTotalItems) {
+            throw new IllegalArgumentException("The trace of \'" + trace.getName() + "\' cannot be replayed on \'" + name + "\' in its current state.");
+        }
+        reader = trace.reader();
+        while (items.size() > 1) {
+            item = next();
+            if (item.getSize() <= maxCapacity) {
+                if (!reader.next() || reader.getStep() != nbTotalItems - items.size() - 1) {
+                    throw new IllegalArgumentException("The trace of \'" + trace.getName() + "\' does not match the instance.");
                 }
+                bin = reader.getBin();
+                place(bin < openBins.size() ? openBins.get(bin) : openBin(), item);
             }
         }
         tmp = new ArrayList(closedBins);
@@ -104,6 +274,134 @@ public class BinPackingSolver {
         return tmp;
     }
 
+    /**
+     * Completes the flight recorder event of a solve and commits it.
+     * <p>
+     * @param event The event started when the solve began.
+     * @param heuristic The name of the heuristic or hyper-heuristic used.
+     * @param nbItems The number of items to pack when the solve began.
+     */
+    private void commit(SolveEvent event, String heuristic, int nbItems) {
+        if (event.shouldCommit()) {
+            event.instance = name;
+            event.heuristic = heuristic;
+            event.nbItems = nbItems;
+            event.nbBins = getNbBins();
+            event.nbOpenBins = openBins.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Removes the next item to pack from the items left.
+     * <p>
+     * @return The next item to pack.
+     */
+    Item next() {
+        Item item;
+        item = items.remove(0);
+        features.invalidate();
+        if (binSeeds != null) {
+            stateHash ^= getCursorKey(nbTotalItems - items.size() - 1) ^ getCursorKey(nbTotalItems - items.size());
+        }
+        return item;
+    }
+
+    /**
+     * Packs an item in a bin and closes the bin if it becomes full.
+     * <p>
+     * @param bin The bin selected for the item.
+     * @param item The item to pack.
+     */
+    void place(Bin bin, Item item) {
+        if (binSeeds != null) {
+            stateHash ^= getKey(bin);
+        }
+        /*
+         * The item is packed.
+         */
+        bin.pack(item);
+        features.invalidate();
+        /*
+         * Full bins cannot longer be used.
+         */
+        if (bin.getCapacity() == 0) {
+            closedBins.add(bin);
+            openBins.remove(bin);
+            if (binSeeds != null) {
+                binSeeds.remove(bin);
+                stateHash ^= getClosedKey(closedBins.size() - 1) ^ getClosedKey(closedBins.size());
+            }
+            if (Metrics.isEnabled()) {
+                BINS_CLOSED.increment();
+            }
+        } else if (binSeeds != null) {
+            stateHash ^= getKey(bin);
+        }
+    }
+
+    /**
+     * Returns the bins used so far (the closed bins first).
+     * <p>
+     * @return The bins used so far.
+     */
+    List<Bin> getSolution() {
+        List<Bin> tmp;
+        tmp = new ArrayList(closedBins);
+        tmp.addAll(openBins);
+        return tmp;
+    }
+
+    /**
+     * Returns a 64-bit hash of the current state of this solver: the instance,
+     * the number of items already processed, the number of closed bins and
+     * the residual capacity and colors of every open bin (in order). Two
+     * solvers with the same hash are in the same state, except for unlikely
+     * collisions. The hash is maintained incrementally (in constant time per
+     * item) once this method has been called.
+     * <p>
+     * @return A 64-bit hash of the current state of this solver.
+     */
+    public long getStateHash() {
+        if (binSeeds == null) {
+            binSeeds = new IdentityHashMap();
+            nbOpened = 0;
+            stateHash = fingerprint ^ getCursorKey(nbTotalItems - items.size()) ^ getClosedKey(closedBins.size());
+            for (Bin bin : openBins) {
+                binSeeds.put(bin, mix(fingerprint + (++nbOpened) * GOLDEN_GAMMA));
+                stateHash ^= getKey(bin);
+            }
+        }
+        return stateHash;
+    }
+
+    /*
+     * Zobrist-style keys: instead of tables of random numbers, every component
+     * of the state is mixed with its own constant by a strong 64-bit mixer.
+     */
+    private long getKey(Bin bin) {
+        long colors;
+        colors = 0;
+        for (int color : bin.getColors()) {
+            colors ^= mix((color + 1) * 0xC2B2AE3D27D4EB4FL);
+        }
+        return mix(binSeeds.get(bin) ^ mix(bin.getCapacity() * 0xD6E8FEB86659FD93L ^ colors));
+    }
+
+    private static long getCursorKey(int cursor) {
+        return mix((cursor + 1) * 0xA0761D6478BD642FL);
+    }
+
+    private static long getClosedKey(int nbClosed) {
+        return mix((nbClosed + 1) * 0xE7037ED1A0B428DBL);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Returns the items left to be packed in the bin packing problem instance
      * being solved.
@@ -121,23 +419,11 @@ public class BinPackingSolver {
      * @return
      */
     public List<Bin> solveState(Heuristic heuristic) {
-        Bin bin;
         Item item;
         List<Bin> tmp;
-        item = items.remove(0);
+        item = next();
         if (item.getSize() <= maxCapacity) {
-            bin = selectBin(heuristic, item);
-            /*
-            * The item is packed.
-            */
-            bin.pack(item);
-            /*
-            * Full bins cannot longer be used.
-            */
-            if (bin.getCapacity() == 0) {
-                closedBins.add(bin);
-                openBins.remove(bin);
-            }
+            place(selectBin(heuristic, item), item);
         }
         tmp = new ArrayList(closedBins);
         tmp.addAll(openBins);
@@ -349,13 +635,44 @@ public class BinPackingSolver {
         /*
          * If no bin is selected we have to open a new bin to pack the item.
          */
+        if (Metrics.isEnabled()) {
+            BINS_SCANNED.record(openBins.size());
+        }
         if (selected == null) {
-            selected = new Bin(maxCapacity, maxColors);
-            openBins.add(selected);
+            selected = openBin();
         }
         return selected;
     }
 
+    /**
+     * Opens a new bin after the open bins.
+     * <p>
+     * @return The new bin.
+     */
+    private Bin openBin() {
+        Bin bin;
+        bin = new Bin(maxCapacity, maxColors);
+        openBins.add(bin);
+        features.invalidate();
+        if (binSeeds != null) {
+            binSeeds.put(bin, mix(fingerprint + (++nbOpened) * GOLDEN_GAMMA));
+            stateHash ^= getKey(bin);
+        }
+        if (Metrics.isEnabled()) {
+            BINS_OPENED.increment();
+        }
+        return bin;
+    }
+
+    /**
+     * Returns the name of the file that contains the instance being solved.
+     * <p>
+     * @return The name of the file that contains the instance being solved.
+     */
+    public String getName() {
+        return name;
+    }
+
     /**
      * Returns the number of bins used given the current solution to the bin
      * packing problem instance being solved.
@@ -398,32 +715,72 @@ public class BinPackingSolver {
 
     /**
      * Returns the value of a specific feature of the bin packing problem being
-     * solved.
+     * solved. The value is computed only once per state (see
+     * {@link #getFeatures()}).
      * <p>
      * @param feature The feature to evaluate.
      * @return The value of a specific feature of the bin packing problem being
      * solved.
      */
     public double getFeature(Feature feature) {
-        int i;
+        return features.get(feature);
+    }
+
+    /**
+     * Returns the features of the current state of the bin packing problem
+     * being solved. The features are computed when they are first read and
+     * shared by every reader until the state changes.
+     * <p>
+     * @return The features of the current state of the bin packing problem
+     * being solved.
+     */
+    public FeatureVector getFeatures() {
+        return features;
+    }
+
+    /**
+     * Computes the value of a specific feature (recording the time spent when
+     * the metrics are enabled).
+     * <p>
+     * @param feature The feature to evaluate.
+     * @return The value of a specific feature of the bin packing problem being
+     * solved.
+     */
+    double evaluateFeature(Feature feature) {
+        long start;
+        double value;
+        if (!Metrics.isEnabled()) {
+            return computeFeature(feature);
+        }
+        start = System.nanoTime();
+        value = computeFeature(feature);
+        FEATURE_TIME[feature.ordinal()].record(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * Computes the value of a specific feature of the bin packing problem being
+     * solved.
+     * <p>
+     * @param feature The feature to evaluate.
+     * @return The value of a specific feature of the bin packing problem being
+     * solved.
+     */
+    private double computeFeature(Feature feature) {
         double tmp;
-        double[] values;
         List<Integer> colors;
+        RunningStatistics statistics;
         switch (feature) {
             case AVGL:
-                i = 0;
-                values = new double[items.size()];
-                for (Item item : items) {
-                    values[i++] = item.getSize();
-                }
-                return Statistical.mean(values) / Statistical.max(values);
             case STDL:
-                i = 0;
-                values = new double[items.size()];
+                /*
+                 * Both features are computed in a single pass over the items.
+                 */
+                statistics = new RunningStatistics();
                 for (Item item : items) {
-                    values[i++] = item.getSize();
+                    statistics.accept(item.getSize());
                 }
-                return Statistical.stdev(values) / Statistical.max(values);
+                return (feature == Feature.AVGL ? statistics.getMean() : statistics.getStdev()) / statistics.getMax();
             case SMALL:
                 tmp = 0;
                 for (Item item : items) {
@@ -0,0 +1,302 @@
+package BinPacking.Solver;
+
+import BinPacking.Utils.Files;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides the decisions made by a hyper-heuristic while solving one instance,
+ * as recorded by a {@link TraceRecorder}.
+ * <p>
+ * A trace is enough to rebuild the exact solution of the instance (see
+ * {@link BinPackingSolver#replay(DecisionTrace)}) and to analyze the
+ * decisions (for instance, how often every heuristic was applied) without
+ * computing any feature or selecting any heuristic again. The decisions are
+ * kept in the encoded form written by the recorder and decoded on demand by a
+ * {@link Reader}. The traces of a whole set of instances can be saved in one
+ * file.
+ * <p>
+ * @version 1.0
+ */
+public class DecisionTrace {
+
+    private static final int MAGIC = 0x42505452;
+    private static final int VERSION = 1;
+    private static final Heuristic[] HEURISTICS = Heuristic.values();
+
+    private final String name;
+    private final long fingerprint;
+    private final Feature[] features;
+    private final int nbSteps;
+    private final byte[] data;
+
+    /**
+     * Creates a new instance of <code>DecisionTrace</code>.
+     * <p>
+     * @param name The name of the instance.
+     * @param fingerprint The fingerprint of the instance.
+     * @param features The features recorded at every decision.
+     * @param nbSteps The number of decisions.
+     * @param data The encoded decisions.
+     */
+    DecisionTrace(String name, long fingerprint, Feature[] features, int nbSteps, byte[] data) {
+        this.name = name;
+        this.fingerprint = fingerprint;
+        this.features = features;
+        this.nbSteps = nbSteps;
+        this.data = data;
+    }
+
+    /**
+     * Returns the name of the instance.
+     * <p>
+     * @return The name of the instance.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the fingerprint of the instance (see
+     * {@link BinPacking.Problem.BinPackingProblem#getFingerprint()}).
+     * <p>
+     * @return The fingerprint of the instance.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the features recorded at every decision.
+     * <p>
+     * @return The features recorded at every decision (empty if only the
+     * decisions were recorded).
+     */
+    public Feature[] getFeatures() {
+        return features.clone();
+    }
+
+    /**
+     * Returns the number of decisions (the number of items packed).
+     * <p>
+     * @return The number of decisions.
+     */
+    public int getNbSteps() {
+        return nbSteps;
+    }
+
+    /**
+     * Returns the number of bytes used by the encoded decisions.
+     * <p>
+     * @return The number of bytes used by the encoded decisions.
+     */
+    public int getSize() {
+        return data.length;
+    }
+
+    /**
+     * Returns the number of times every heuristic was applied.
+     * <p>
+     * @return The number of times every heuristic was applied, indexed by the
+     * ordinal of the heuristic.
+     */
+    public int[] getFrequencies() {
+        int[] frequencies;
+        Reader reader;
+        frequencies = new int[HEURISTICS.length];
+        reader = reader();
+        while (reader.next()) {
+            frequencies[reader.getHeuristic().ordinal()]++;
+        }
+        return frequencies;
+    }
+
+    /**
+     * Returns a new reader positioned before the first decision.
+     * <p>
+     * @return A new reader positioned before the first decision.
+     */
+    public Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Saves several traces in a file.
+     * <p>
+     * @param fileName The name of the file where the traces will be saved.
+     * @param traces The traces to save.
+     */
+    public static void save(String fileName, List<DecisionTrace> traces) {
+        DataOutputStream out;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName, false)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(traces.size());
+            for (DecisionTrace trace : traces) {
+                out.writeUTF(trace.name);
+                out.writeLong(trace.fingerprint);
+                out.writeInt(trace.features.length);
+                for (Feature feature : trace.features) {
+                    out.writeUTF(feature.name());
+                }
+                out.writeInt(trace.nbSteps);
+                out.writeInt(trace.data.length);
+                out.write(trace.data);
+            }
+            out.close();
+        } catch (IOException e) {
+            System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
+            System.out.println("Exception: " + e.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Loads the traces saved by {@link #save(String, List)}.
+     * <p>
+     * @param fileName The name of the file that contains the traces.
+     * @return The traces, in the order they were saved.
+     */
+    public static List<DecisionTrace> load(String fileName) {
+        int nbTraces;
+        String name;
+        long fingerprint;
+        Feature[] features;
+        int nbSteps;
+        byte[] data;
+        ByteBuffer buffer;
+        List<DecisionTrace> traces;
+        buffer = Files.map(fileName);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IllegalArgumentException("The file \'" + fileName + "\' does not contain decision traces (or its version is not supported).");
+            }
+            nbTraces = buffer.getInt();
+            traces = new ArrayList(nbTraces);
+            for (int i = 0; i < nbTraces; i++) {
+                name = getString(buffer);
+                fingerprint = buffer.getLong();
+                features = new Feature[buffer.getInt()];
+                for (int j = 0; j < features.length; j++) {
+                    features[j] = Feature.valueOf(getString(buffer));
+                }
+                nbSteps = buffer.getInt();
+                data = new byte[buffer.getInt()];
+                buffer.get(data);
+                traces.add(new DecisionTrace(name, fingerprint, features, nbSteps, data));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("The file \'" + fileName + "\' is truncated.");
+        }
+        return traces;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes;
+        bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the decisions of a trace one at a time.
+     */
+    public class Reader {
+
+        private final long[] values;
+        private int position, step, bin;
+        private Heuristic heuristic;
+
+        private Reader() {
+            position = 0;
+            step = -1;
+            values = new long[features.length];
+        }
+
+        /**
+         * Moves to the next decision.
+         * <p>
+         * @return Whether there was another decision or not.
+         */
+        public boolean next() {
+            int zeros;
+            if (position >= data.length) {
+                return false;
+            }
+            step += (int) getVarLong() + 1;
+            heuristic = HEURISTICS[data[position++]];
+            for (int i = 0; i < values.length; i++) {
+                zeros = data[position++];
+                if (zeros < 64) {
+                    values[i] ^= getVarLong() << zeros;
+                }
+            }
+            bin = (int) getVarLong();
+            return true;
+        }
+
+        /**
+         * Returns the position of the item packed in the current decision.
+         * <p>
+         * @return The position of the item in the instance.
+         */
+        public int getStep() {
+            return step;
+        }
+
+        /**
+         * Returns the heuristic applied in the current decision.
+         * <p>
+         * @return The heuristic applied in the current decision.
+         */
+        public Heuristic getHeuristic() {
+            return heuristic;
+        }
+
+        /**
+         * Returns the position, among the open bins, of the bin where the item
+         * was packed in the current decision.
+         * <p>
+         * @return The position of the bin among the open bins (equal to the
+         * number of open bins if a new bin was opened).
+         */
+        public int getBin() {
+            return bin;
+        }
+
+        /**
+         * Returns the value of a recorded feature in the state where the
+         * current decision was made.
+         * <p>
+         * @param i The position of the feature in {@link #getFeatures()}.
+         * @return The value of the feature.
+         */
+        public double getFeature(int i) {
+            return Double.longBitsToDouble(values[i]);
+        }
+
+        private long getVarLong() {
+            int shift;
+            long value;
+            byte b;
+            value = 0;
+            shift = 0;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+}
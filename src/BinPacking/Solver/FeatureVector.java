@@ -0,0 +1,84 @@
+package BinPacking.Solver;
+
+/**
+ * Provides lazy, memoized access to the features of the current state of a
+ * solver.
+ * <p>
+ * Every feature is computed the first time it is read after the state of the
+ * solver changes and the value is reused by every later read in the same
+ * state, so the hyper-heuristic, the cost evaluation and any logging done for
+ * one step share the same computations, and the features nobody reads are
+ * never computed. The solver invalidates the vector whenever it packs an item
+ * (the vector must not be used if the items or bins of the solver are
+ * modified by other means).
+ * <p>
+ * @version 1.0
+ */
+public class FeatureVector {
+
+    private final BinPackingSolver solver;
+    private final double[] values;
+    private long computed;
+
+    /**
+     * Creates a new instance of <code>FeatureVector</code>.
+     * <p>
+     * @param solver The solver whose features are provided.
+     */
+    FeatureVector(BinPackingSolver solver) {
+        this.solver = solver;
+        values = new double[Feature.values().length];
+        computed = 0;
+    }
+
+    /**
+     * Returns the value of a feature in the current state of the solver.
+     * <p>
+     * @param feature The feature to evaluate.
+     * @return The value of the feature in the current state of the solver.
+     */
+    public double get(Feature feature) {
+        int i;
+        i = feature.ordinal();
+        if ((computed & (1L << i)) == 0) {
+            values[i] = solver.evaluateFeature(feature);
+            computed |= 1L << i;
+        }
+        return values[i];
+    }
+
+    /**
+     * Returns the values of several features in the current state of the
+     * solver.
+     * <p>
+     * @param features The features to evaluate.
+     * @param state The array where the values will be stored (one per
+     * feature, in the same order).
+     * @return The array provided as argument.
+     */
+    public double[] get(Feature[] features, double[] state) {
+        for (int i = 0; i < features.length; i++) {
+            state[i] = get(features[i]);
+        }
+        return state;
+    }
+
+    /**
+     * Returns whether a feature has already been computed in the current state
+     * of the solver or not.
+     * <p>
+     * @param feature The feature.
+     * @return Whether the feature has already been computed or not.
+     */
+    public boolean isComputed(Feature feature) {
+        return (computed & (1L << feature.ordinal())) != 0;
+    }
+
+    /**
+     * Discards all the values (the state of the solver has changed).
+     */
+    void invalidate() {
+        computed = 0;
+    }
+
+}
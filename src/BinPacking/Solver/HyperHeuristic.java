@@ -33,6 +33,52 @@ public abstract class HyperHeuristic {
      * @return The heuristic to be used given the current problem state.
      */
     public abstract Heuristic getHeuristic(BinPackingSolver solver);
+
+    /**
+     * Returns the heuristic to be used given a problem state that has already
+     * been characterized (for instance, by an <code>OnlinePacker</code>).
+     * <p>
+     * @param state The values of the features of this hyper-heuristic, in the
+     * same order as {@link #getFeatures()}.
+     * @return The heuristic to be used given the problem state.
+     */
+    public abstract Heuristic getHeuristic(double[] state);
+
+    /**
+     * Returns an immutable copy of this hyper-heuristic that can be shared by
+     * many solvers running in different threads. Changes made to this
+     * hyper-heuristic afterwards (for instance, further training) do not
+     * affect the copy.
+     * <p>
+     * @return An immutable copy of this hyper-heuristic.
+     */
+    public abstract HyperHeuristicModel freeze();
+
+    /**
+     * Returns the features used by this hyper-heuristic to characterize the
+     * problem state.
+     * <p>
+     * @return The features used by this hyper-heuristic.
+     */
+    public Feature[] getFeatures() {
+        Feature[] tmp;
+        tmp = new Feature[features.length];
+        System.arraycopy(features, 0, tmp, 0, features.length);
+        return tmp;
+    }
+
+    /**
+     * Returns the heuristics available for this hyper-heuristic.
+     * <p>
+     * @return The heuristics available for this hyper-heuristic.
+     */
+    public Heuristic[] getHeuristics() {
+        Heuristic[] tmp;
+        tmp = new Heuristic[heuristics.length];
+        System.arraycopy(heuristics, 0, tmp, 0, heuristics.length);
+        return tmp;
+    }
+
     public abstract double[][] train(String folder);
     public abstract void saveCondMatrix(String fileName);
 
@@ -0,0 +1,459 @@
+package BinPacking.Solver;
+
+import BinPacking.Utils.Files;
+import BinPacking.Utils.ResultWriter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides the methods to use a trained hyper-heuristic that selects, for
+ * every problem state, the heuristic whose condition is the closest to the
+ * state (Euclidean distance in the feature space).
+ * <p>
+ * A model is defined only by its features, its heuristics and one condition
+ * per heuristic, so it can be rebuilt from the condition matrices saved by
+ * {@link HyperHeuristic#saveCondMatrix(String)} without training again, or
+ * obtained from a trained hyper-heuristic with {@link HyperHeuristic#freeze()}.
+ * <p>
+ * Models are immutable: the conditions are stored in one flat array that is
+ * never modified after construction. The only mutable state is the number of
+ * times every heuristic has been selected, which is kept in one
+ * {@link LongAdder} per heuristic (striped counters whose size is bounded by
+ * the contention, not by the number of threads that have used the model), so
+ * any number of solvers can share one model concurrently without locks.
+ * <p>
+ * Besides the CSV condition matrices, models can be saved in a compact binary
+ * format (files whose name ends with <code>.bphh</code>) that stores the
+ * order of the features, the order of the heuristics, the conditions and the
+ * selection frequencies, and loads in a single pass over a mapped file:
+ * <pre>
+ * int     magic (BPHH)
+ * int     version
+ * int     number of features
+ * int     number of heuristics
+ * string  feature names (length and UTF-8 bytes), in order
+ * string  heuristic names (length and UTF-8 bytes), in order
+ * double  conditions, one row per heuristic
+ * long    selection frequencies, one per heuristic
+ * </pre>
+ * <p>
+ * @version 1.0
+ */
+public final class HyperHeuristicModel extends HyperHeuristic {
+
+    /**
+     * The extension of the files that store models in the binary format.
+     */
+    public static final String BINARY_EXTENSION = ".bphh";
+    /**
+     * The first four bytes of the files that store models in the binary format.
+     */
+    public static final int BINARY_MAGIC = 0x42504848;
+    /**
+     * The version of the binary format.
+     */
+    public static final int BINARY_VERSION = 1;
+
+    private final double[] conditions;
+    private final long[] frequencies;
+    private final LongAdder[] counters;
+    private final ThreadLocal<double[]> states;
+
+    /**
+     * Creates a new instance of <code>HyperHeuristicModel</code>.
+     * <p>
+     * @param features The features used to characterize the problem states.
+     * @param heuristics The heuristics available for the hyper-heuristic.
+     * @param conditions The condition of every heuristic, one row per
+     * heuristic and one column per feature.
+     */
+    public HyperHeuristicModel(Feature[] features, Heuristic[] heuristics, double[][] conditions) {
+        this(features, heuristics, conditions, new long[heuristics.length]);
+    }
+
+    /**
+     * Creates a new instance of <code>HyperHeuristicModel</code> whose
+     * selection frequencies start from the values provided as argument.
+     * <p>
+     * @param features The features used to characterize the problem states.
+     * @param heuristics The heuristics available for the hyper-heuristic.
+     * @param conditions The condition of every heuristic, one row per
+     * heuristic and one column per feature.
+     * @param frequencies The number of times every heuristic has already been
+     * selected (for instance, during training).
+     */
+    public HyperHeuristicModel(Feature[] features, Heuristic[] heuristics, double[][] conditions, long[] frequencies) {
+        super(features, heuristics);
+        if (conditions.length != heuristics.length || frequencies.length != heuristics.length) {
+            throw new IllegalArgumentException("There must be one condition and one frequency per heuristic.");
+        }
+        this.frequencies = Arrays.copyOf(frequencies, frequencies.length);
+        this.conditions = new double[heuristics.length * features.length];
+        for (int i = 0; i < conditions.length; i++) {
+            if (conditions[i].length != features.length) {
+                throw new IllegalArgumentException("Every condition must have one value per feature.");
+            }
+            System.arraycopy(conditions[i], 0, this.conditions, i * features.length, features.length);
+        }
+        counters = new LongAdder[heuristics.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        states = ThreadLocal.withInitial(() -> new double[features.length]);
+    }
+
+    /**
+     * Loads a model from a file. Files whose name ends with
+     * <code>.bphh</code> are read in the binary format written by
+     * {@link #save(String)}; any other file is imported as a condition matrix
+     * (see {@link #importCondMatrix(String)}).
+     * <p>
+     * @param fileName The name of the file that contains the model.
+     * @return The model stored in the file.
+     * @throws IllegalArgumentException If the file cannot be read or does not
+     * contain a valid model.
+     */
+    public static HyperHeuristicModel load(String fileName) {
+        try {
+            if (fileName.endsWith(BINARY_EXTENSION)) {
+                return loadBinary(fileName);
+            }
+            return importCondMatrix(fileName);
+        } catch (UncheckedIOException e) {
+            throw new IllegalArgumentException("The model \'" + fileName + "\' cannot be read.", e.getCause());
+        }
+    }
+
+    /**
+     * Imports a model from a condition matrix saved by
+     * {@link HyperHeuristic#saveCondMatrix(String)} (like the ones in
+     * <code>Experimental Results</code>): a header with the names of the
+     * features followed by one line per heuristic with its condition, its name
+     * and the number of times it was selected.
+     * <p>
+     * @param fileName The name of the file that contains the condition matrix.
+     * @return The model defined by the condition matrix.
+     */
+    public static HyperHeuristicModel importCondMatrix(String fileName) {
+        int nbFeatures;
+        String text;
+        StringTokenizer lines, values;
+        Feature[] features;
+        List<Heuristic> heuristics;
+        List<double[]> conditions;
+        List<Long> frequencies;
+        double[] condition;
+        long[] tmp;
+        text = Files.read(fileName);
+        lines = new StringTokenizer(text, "\n");
+        if (!lines.hasMoreTokens()) {
+            throw new IllegalArgumentException("The condition matrix \'" + fileName + "\' is empty.");
+        }
+        values = new StringTokenizer(lines.nextToken(), ",");
+        nbFeatures = values.countTokens();
+        features = new Feature[nbFeatures];
+        for (int i = 0; i < nbFeatures; i++) {
+            features[i] = Feature.valueOf(values.nextToken().trim());
+        }
+        heuristics = new ArrayList();
+        conditions = new ArrayList();
+        frequencies = new ArrayList();
+        while (lines.hasMoreTokens()) {
+            values = new StringTokenizer(lines.nextToken(), ",");
+            if (values.countTokens() < nbFeatures + 1) {
+                continue;
+            }
+            condition = new double[nbFeatures];
+            for (int i = 0; i < nbFeatures; i++) {
+                condition[i] = Double.parseDouble(values.nextToken().trim());
+            }
+            heuristics.add(Heuristic.valueOf(values.nextToken().trim()));
+            conditions.add(condition);
+            frequencies.add(values.hasMoreTokens() ? Long.parseLong(values.nextToken().trim()) : 0);
+        }
+        tmp = new long[frequencies.size()];
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i] = frequencies.get(i);
+        }
+        return new HyperHeuristicModel(features, heuristics.toArray(new Heuristic[0]), conditions.toArray(new double[0][]), tmp);
+    }
+
+    /**
+     * Loads a model saved in the binary format.
+     * <p>
+     * @param fileName The name of the file that contains the model.
+     * @return The model stored in the file.
+     */
+    private static HyperHeuristicModel loadBinary(String fileName) {
+        int nbFeatures, nbHeuristics;
+        ByteBuffer data;
+        Feature[] features;
+        Heuristic[] heuristics;
+        double[][] conditions;
+        long[] frequencies;
+        data = Files.open(fileName);
+        try {
+            if (data.getInt() != BINARY_MAGIC || data.getInt() != BINARY_VERSION) {
+                throw new IllegalArgumentException("The file \'" + fileName + "\' does not contain a model (or its version is not supported).");
+            }
+            nbFeatures = data.getInt();
+            nbHeuristics = data.getInt();
+            /*
+             * Every name takes at least two bytes, so larger counts cannot fit in the file.
+             */
+            if (nbFeatures < 0 || nbHeuristics < 0 || nbFeatures > data.remaining() / 2 || nbHeuristics > data.remaining() / 2) {
+                throw new IllegalArgumentException("The model \'" + fileName + "\' is truncated.");
+            }
+            features = new Feature[nbFeatures];
+            for (int i = 0; i < nbFeatures; i++) {
+                features[i] = Feature.valueOf(getString(data));
+            }
+            heuristics = new Heuristic[nbHeuristics];
+            for (int i = 0; i < nbHeuristics; i++) {
+                heuristics[i] = Heuristic.valueOf(getString(data));
+            }
+            if (data.remaining() < 8L * nbHeuristics * (nbFeatures + 1)) {
+                throw new IllegalArgumentException("The model \'" + fileName + "\' is truncated.");
+            }
+            conditions = new double[nbHeuristics][nbFeatures];
+            for (int i = 0; i < nbHeuristics; i++) {
+                data.asDoubleBuffer().get(conditions[i]);
+                data.position(data.position() + nbFeatures * Double.BYTES);
+            }
+            frequencies = new long[nbHeuristics];
+            data.asLongBuffer().get(frequencies);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("The model \'" + fileName + "\' is truncated.");
+        }
+        return new HyperHeuristicModel(features, heuristics, conditions, frequencies);
+    }
+
+    /**
+     * Reads a string written with {@link DataOutputStream#writeUTF(String)}
+     * (only ASCII names are expected).
+     * <p>
+     * @param data The buffer to read from.
+     * @return The string.
+     */
+    private static String getString(ByteBuffer data) {
+        byte[] bytes;
+        bytes = new byte[data.getShort() & 0xFFFF];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Saves this model in the binary format read by {@link #load(String)}. The
+     * selection frequencies saved are the ones returned by
+     * {@link #getFrequencies()}.
+     * <p>
+     * @param fileName The file where the model will be saved.
+     */
+    public void save(String fileName) {
+        long[] tmp;
+        DataOutputStream out;
+        tmp = getFrequencies();
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName, false)));
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+            out.writeInt(features.length);
+            out.writeInt(heuristics.length);
+            for (Feature feature : features) {
+                out.writeUTF(feature.name());
+            }
+            for (Heuristic heuristic : heuristics) {
+                out.writeUTF(heuristic.name());
+            }
+            for (double value : conditions) {
+                out.writeDouble(value);
+            }
+            for (long frequency : tmp) {
+                out.writeLong(frequency);
+            }
+            out.close();
+        } catch (IOException e) {
+            System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
+            System.out.println("Exception: " + e.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+    }
+
+    @Override
+    public Heuristic getHeuristic(BinPackingSolver solver) {
+        double[] state;
+        /*
+         * Calculates the current problem state (in a buffer owned by the thread).
+         */
+        state = states.get();
+        for (int i = 0; i < state.length; i++) {
+            state[i] = solver.getFeature(features[i]);
+        }
+        return getHeuristic(state);
+    }
+
+    /**
+     * Returns the heuristic whose condition is the closest to a problem state
+     * and counts its selection.
+     * <p>
+     * @param state The current problem state.
+     * @return The heuristic whose condition is the closest to the state.
+     */
+    @Override
+    public Heuristic getHeuristic(double[] state) {
+        int selected, offset;
+        double distance, minDistance, tmp;
+        /*
+         * Calculates the distance from the problem state to each of the condition
+         * in the hyper-heuristic (the square root is not needed to compare them).
+         */
+        minDistance = Double.MAX_VALUE;
+        selected = -1;
+        for (int i = 0; i < heuristics.length; i++) {
+            offset = i * features.length;
+            distance = 0;
+            for (int j = 0; j < features.length; j++) {
+                tmp = state[j] - conditions[offset + j];
+                distance += tmp * tmp;
+            }
+            if (distance < minDistance) {
+                minDistance = distance;
+                selected = i;
+            }
+        }
+        counters[selected].increment();
+        return heuristics[selected];
+    }
+
+    /**
+     * Returns the number of times every heuristic has been selected by this
+     * model (starting from the frequencies it was created with), added over
+     * all the threads that have used it. The counters are
+     * read without stopping those threads, so selections that happen during
+     * the call may or may not be included.
+     * <p>
+     * @return The number of times every heuristic has been selected, in the
+     * same order as {@link #getHeuristics()}.
+     */
+    public long[] getFrequencies() {
+        long[] total;
+        total = Arrays.copyOf(frequencies, frequencies.length);
+        for (int i = 0; i < total.length; i++) {
+            total[i] += counters[i].sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the condition of a heuristic of this model.
+     * <p>
+     * @param heuristic The position of the heuristic, in the same order as
+     * {@link #getHeuristics()}.
+     * @return The condition of the heuristic, one value per feature.
+     */
+    public double[] getCondition(int heuristic) {
+        return Arrays.copyOfRange(conditions, heuristic * features.length, (heuristic + 1) * features.length);
+    }
+
+    /**
+     * Models are already frozen.
+     * <p>
+     * @return This model.
+     */
+    @Override
+    public HyperHeuristicModel freeze() {
+        return this;
+    }
+
+    /**
+     * Models are already trained, so their conditions never change.
+     * <p>
+     * @param folder Ignored.
+     * @return The condition of every heuristic, one row per heuristic and one
+     * column per feature.
+     */
+    @Override
+    public double[][] train(String folder) {
+        double[][] tmp;
+        tmp = new double[heuristics.length][];
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i] = getCondition(i);
+        }
+        return tmp;
+    }
+
+    /**
+     * Saves the condition matrix of this model in the same format read by
+     * {@link #load(String)}, with the number of times every heuristic has been
+     * selected.
+     * <p>
+     * @param fileName The file where the condition matrix will be saved.
+     */
+    @Override
+    public void saveCondMatrix(String fileName) {
+        long[] tmp;
+        StringBuilder string;
+        ResultWriter writer;
+        string = new StringBuilder();
+        for (Feature feature : features) {
+            string.append(feature).append(", ");
+        }
+        string.delete(string.length() - 2, string.length());
+        writer = new ResultWriter(fileName, string.toString(), false);
+        tmp = getFrequencies();
+        for (int i = 0; i < heuristics.length; i++) {
+            string.setLength(0);
+            for (int j = 0; j < features.length; j++) {
+                string.append(conditions[i * features.length + j]).append(", ");
+            }
+            string.append(heuristics[i]).append(", ").append(tmp[i]);
+            writer.write(string.toString());
+        }
+        writer.close();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string;
+        string = new StringBuilder();
+        for (int i = 0; i < heuristics.length; i++) {
+            string.append(Arrays.toString(getCondition(i))).append(" => ").append(heuristics[i]).append("\n");
+        }
+        return string.toString().trim();
+    }
+
+    /**
+     * Converts a model from one format to another (for instance, a condition
+     * matrix in CSV into the binary format). The format of every file is given
+     * by its extension.
+     * <p>
+     * @param args The file that contains the model and the file where it will
+     * be saved.
+     */
+    public static void main(String[] args) {
+        HyperHeuristicModel model;
+        if (args.length != 2) {
+            System.out.println("Usage: HyperHeuristicModel <input> <output>");
+            System.exit(1);
+        }
+        model = load(args[0]);
+        if (args[1].endsWith(BINARY_EXTENSION)) {
+            model.save(args[1]);
+        } else {
+            model.saveCondMatrix(args[1]);
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+package BinPacking.Solver;
+
+import BinPacking.Problem.BinPackingProblem;
+import BinPacking.Problem.Item;
+import BinPacking.Utils.BinPackingProblemSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Provides the methods to evaluate a set of condition matrices on the same
+ * training set, re-solving only what changes from one matrix to the next.
+ * <p>
+ * Every instance keeps the state (the values of the features) where every
+ * decision was made, the rule selected and copies of the solver taken every
+ * few decisions. When the conditions change (for instance, after a move of
+ * the simulated annealing), the stored states are checked against the new
+ * conditions without computing any feature; the instances where no decision
+ * flips keep their cost, and the rest resume from the last copy before the
+ * first decision that flips. Evaluating a matrix therefore costs roughly the
+ * fraction of the decisions that actually change. The decisions follow
+ * {@link BinPackingSolver#solve(HyperHeuristic)}: the heuristic whose
+ * condition is the closest to the state is applied. Every instance is
+ * requested from the set only the first time it is solved.
+ * <p>
+ * @version 1.0
+ */
+public class IncrementalEvaluator {
+
+    /**
+     * The number of decisions between two copies of the solver by default.
+     */
+    public static final int DEFAULT_INTERVAL = 8;
+
+    private final BinPackingProblemSet instances;
+    private final Feature[] features;
+    private final int interval;
+    private final Trace[] traces;
+    private long nbDecisions, nbEvaluated;
+
+    /**
+     * Creates a new instance of <code>IncrementalEvaluator</code>.
+     * <p>
+     * @param instances The instances of the training set.
+     * @param features The features used by the conditions.
+     * @param interval The number of decisions between two copies of the
+     * solver (smaller intervals use more memory and resume closer to the
+     * first decision that changes).
+     */
+    public IncrementalEvaluator(BinPackingProblemSet instances, Feature[] features, int interval) {
+        this.instances = instances;
+        this.features = features.clone();
+        this.interval = Math.max(1, interval);
+        traces = new Trace[instances.size()];
+    }
+
+    /**
+     * Returns the mean cost (AVGW) of the training set when solved with a
+     * condition matrix. Only the decisions that differ from the previous
+     * matrix evaluated (and the decisions after them) are computed again.
+     * <p>
+     * @param conditions The condition of every heuristic (one row per
+     * heuristic, one column per feature).
+     * @param heuristics The heuristics, in the same order as the rows of the
+     * conditions.
+     * @return The mean cost of the training set.
+     */
+    public double evaluate(double[][] conditions, Heuristic[] heuristics) {
+        double sum;
+        long[] evaluated;
+        evaluated = new long[traces.length];
+        IntStream.range(0, traces.length).parallel().forEach(i -> evaluated[i] = update(i, conditions, heuristics));
+        sum = 0;
+        nbDecisions = 0;
+        nbEvaluated = 0;
+        for (int i = 0; i < traces.length; i++) {
+            sum += traces[i].cost;
+            nbDecisions += traces[i].nbDecisions;
+            nbEvaluated += evaluated[i];
+        }
+        return traces.length == 0 ? 0 : sum / traces.length;
+    }
+
+    /**
+     * Returns the cost of every instance in the last evaluation.
+     * <p>
+     * @return The cost of every instance in the last evaluation (zero for all
+     * if no matrix has been evaluated yet).
+     */
+    public double[] getCosts() {
+        double[] costs;
+        costs = new double[traces.length];
+        for (int i = 0; i < traces.length; i++) {
+            costs[i] = traces[i] == null ? 0 : traces[i].cost;
+        }
+        return costs;
+    }
+
+    /**
+     * Returns the number of decisions made to solve the training set in the
+     * last evaluation.
+     * <p>
+     * @return The number of decisions made to solve the training set.
+     */
+    public long getNbDecisions() {
+        return nbDecisions;
+    }
+
+    /**
+     * Returns the number of decisions computed again (with their features) in
+     * the last evaluation.
+     * <p>
+     * @return The number of decisions computed again in the last evaluation.
+     */
+    public long getNbEvaluated() {
+        return nbEvaluated;
+    }
+
+    /**
+     * Brings the trace of an instance up to date with a condition matrix.
+     * <p>
+     * @param i The position of the instance.
+     * @param conditions The condition matrix.
+     * @param heuristics The heuristics of the rows of the matrix.
+     * @return The number of decisions computed.
+     */
+    private long update(int i, double[][] conditions, Heuristic[] heuristics) {
+        int flip, block, decision;
+        Trace trace;
+        BinPackingProblem problem;
+        BinPackingSolver solver;
+        trace = traces[i];
+        if (trace == null) {
+            problem = instances.get(i);
+            trace = traces[i] = new Trace(problem.getNbItems(), problem.getMaxCapacity());
+            return solve(new BinPackingSolver(problem), trace, 0, 0, conditions, heuristics);
+        }
+        /*
+         * Finds the first decision that changes with the new conditions.
+         */
+        flip = -1;
+        for (int d = 0; d < trace.nbDecisions; d++) {
+            if (select(trace.states, d * features.length, conditions) != trace.choices[d]) {
+                flip = d;
+                break;
+            }
+        }
+        if (flip < 0) {
+            return 0;
+        }
+        /*
+         * Resumes from the last copy of the solver before that decision.
+         */
+        block = flip / interval;
+        decision = block * interval;
+        while (trace.snapshots.size() > block + 1) {
+            trace.snapshots.remove(trace.snapshots.size() - 1);
+        }
+        solver = new BinPackingSolver(trace.snapshots.get(block));
+        return solve(solver, trace, decision, flip, conditions, heuristics);
+    }
+
+    /**
+     * Solves an instance from a given decision, replaying the stored
+     * decisions before the first one that changes.
+     * <p>
+     * @param solver The solver, in the state before the decision given.
+     * @param trace The trace of the instance.
+     * @param decision The decision where the solver is.
+     * @param flip The first decision that must be computed.
+     * @param conditions The condition matrix.
+     * @param heuristics The heuristics of the rows of the matrix.
+     * @return The number of decisions computed.
+     */
+    private long solve(BinPackingSolver solver, Trace trace, int decision, int flip, double[][] conditions,
+            Heuristic[] heuristics) {
+        int choice;
+        Item item;
+        while (solver.getItems().size() > 1) {
+            if (decision % interval == 0 && trace.snapshots.size() == decision / interval) {
+                trace.snapshots.add(new BinPackingSolver(solver));
+            }
+            item = solver.next();
+            if (item.getSize() <= trace.maxCapacity) {
+                if (decision >= flip) {
+                    solver.getFeatures().get(features, trace.buffer);
+                    System.arraycopy(trace.buffer, 0, trace.states, decision * features.length, features.length);
+                    trace.choices[decision] = select(trace.states, decision * features.length, conditions);
+                }
+                choice = trace.choices[decision++];
+                solver.place(solver.selectBin(heuristics[choice], item), item);
+            }
+        }
+        trace.nbDecisions = decision;
+        trace.cost = solver.getFeature(Feature.AVGW);
+        return decision - flip;
+    }
+
+    /**
+     * Returns the rule whose condition is the closest to a state.
+     * <p>
+     * @param states The stored states.
+     * @param offset The position of the state in the stored states.
+     * @param conditions The condition matrix.
+     * @return The position of the closest rule.
+     */
+    private int select(double[] states, int offset, double[][] conditions) {
+        int selected;
+        double distance, minDistance, tmp;
+        minDistance = Double.MAX_VALUE;
+        selected = 0;
+        for (int i = 0; i < conditions.length; i++) {
+            distance = 0;
+            for (int j = 0; j < features.length; j++) {
+                tmp = states[offset + j] - conditions[i][j];
+                distance += tmp * tmp;
+            }
+            if (distance < minDistance) {
+                minDistance = distance;
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * The decisions made to solve one instance.
+     */
+    private class Trace {
+
+        private final double[] states, buffer;
+        private final int[] choices;
+        private final int maxCapacity;
+        private final List<BinPackingSolver> snapshots;
+        private int nbDecisions;
+        private double cost;
+
+        Trace(int nbItems, int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+            states = new double[nbItems * features.length];
+            buffer = new double[features.length];
+            choices = new int[nbItems];
+            snapshots = new ArrayList();
+        }
+    }
+
+}
@@ -0,0 +1,490 @@
+package BinPacking.Solver;
+
+import java.util.Arrays;
+
+/**
+ * Provides the methods to pack items of the one dimensional class constrained
+ * bin packing problem as they arrive, one at a time.
+ * <p>
+ * Unlike <code>BinPackingSolver</code>, the packer does not know the items
+ * left to be packed. When it is driven by a hyper-heuristic, the features
+ * that describe the items (AVGL, STDL, SMALL, VSMALL, LARGE, VLARGE and
+ * COLORC) are computed over a sliding window with the most recent items
+ * (including the one being packed), while the features that describe the bins
+ * (OBINS, AVGW and COLORF) are computed over all the bins used so far. Every
+ * statistic is updated incrementally, so characterizing the state costs the
+ * same regardless of the number of items seen.
+ * <p>
+ * The bins are kept in flat arrays that only grow when more bins are open at
+ * the same time than ever before, so packing an item does not allocate
+ * memory. The time to pack an item is proportional to the number of open
+ * bins; it can be bounded with a maximum number of open bins, in which case
+ * the fullest open bin is closed whenever a new bin is needed and the limit
+ * has been reached.
+ * <p>
+ * @version 1.0
+ */
+public class OnlinePacker {
+
+    /**
+     * The default number of recent items used to compute the features.
+     */
+    public static final int DEFAULT_WINDOW = 1000;
+
+    private final int maxCapacity, maxColors, window, maxOpenBins;
+    private final Heuristic heuristic;
+    private final HyperHeuristic hyperHeuristic;
+    private final Feature[] features;
+    private final double[] state;
+    /*
+     * Open bins. Each open bin uses one slot; open[0..nbOpen) lists the slots
+     * in the order the bins were opened.
+     */
+    private int[] open, slotIds, slotResiduals, slotNbColors, slotColors, freeSlots;
+    private int nbOpen, nbFreeSlots, nbBins;
+    private long totalResidual, totalColors;
+    /*
+     * Sliding window of recent items.
+     */
+    private final int[] windowSizes, windowColors;
+    private final int[] maxSizes;
+    private final long[] maxPositions;
+    private int[] colorCounts;
+    private int maxHead, maxCount, nbDistinctColors;
+    private int small, verySmall, large, veryLarge;
+    private long position, sum, sumSquares;
+
+    /**
+     * Creates a new instance of <code>OnlinePacker</code> driven by a single
+     * heuristic.
+     * <p>
+     * @param maxCapacity The maximum capacity of the bins.
+     * @param maxColors The maximum number of different colors allowed to be
+     * packed in a bin.
+     * @param heuristic The heuristic used to select the bin for every item.
+     */
+    public OnlinePacker(int maxCapacity, int maxColors, Heuristic heuristic) {
+        this(maxCapacity, maxColors, heuristic, null, DEFAULT_WINDOW, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance of <code>OnlinePacker</code> driven by a single
+     * heuristic and with a bounded number of open bins.
+     * <p>
+     * @param maxCapacity The maximum capacity of the bins.
+     * @param maxColors The maximum number of different colors allowed to be
+     * packed in a bin.
+     * @param heuristic The heuristic used to select the bin for every item.
+     * @param maxOpenBins The maximum number of bins open at the same time.
+     */
+    public OnlinePacker(int maxCapacity, int maxColors, Heuristic heuristic, int maxOpenBins) {
+        this(maxCapacity, maxColors, heuristic, null, DEFAULT_WINDOW, maxOpenBins);
+    }
+
+    /**
+     * Creates a new instance of <code>OnlinePacker</code> driven by a
+     * hyper-heuristic.
+     * <p>
+     * @param maxCapacity The maximum capacity of the bins.
+     * @param maxColors The maximum number of different colors allowed to be
+     * packed in a bin.
+     * @param hyperHeuristic The hyper-heuristic used to select the heuristic
+     * for every item. It must support
+     * {@link HyperHeuristic#getHeuristic(double[])}.
+     * @param window The number of recent items used to compute the features.
+     */
+    public OnlinePacker(int maxCapacity, int maxColors, HyperHeuristic hyperHeuristic, int window) {
+        this(maxCapacity, maxColors, null, hyperHeuristic, window, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance of <code>OnlinePacker</code> driven by a
+     * hyper-heuristic and with a bounded number of open bins.
+     * <p>
+     * @param maxCapacity The maximum capacity of the bins.
+     * @param maxColors The maximum number of different colors allowed to be
+     * packed in a bin.
+     * @param hyperHeuristic The hyper-heuristic used to select the heuristic
+     * for every item. It must support
+     * {@link HyperHeuristic#getHeuristic(double[])}.
+     * @param window The number of recent items used to compute the features.
+     * @param maxOpenBins The maximum number of bins open at the same time.
+     */
+    public OnlinePacker(int maxCapacity, int maxColors, HyperHeuristic hyperHeuristic, int window, int maxOpenBins) {
+        this(maxCapacity, maxColors, null, hyperHeuristic, window, maxOpenBins);
+    }
+
+    private OnlinePacker(int maxCapacity, int maxColors, Heuristic heuristic, HyperHeuristic hyperHeuristic, int window, int maxOpenBins) {
+        int slots;
+        if (window < 1 || maxOpenBins < 1) {
+            throw new IllegalArgumentException("The window and the maximum number of open bins must be positive.");
+        }
+        this.maxCapacity = maxCapacity;
+        this.maxColors = maxColors;
+        this.heuristic = heuristic;
+        this.hyperHeuristic = hyperHeuristic;
+        this.window = window;
+        this.maxOpenBins = maxOpenBins;
+        features = hyperHeuristic == null ? new Feature[0] : hyperHeuristic.getFeatures();
+        state = new double[features.length];
+        slots = Math.min(16, maxOpenBins);
+        open = new int[slots];
+        slotIds = new int[slots];
+        slotResiduals = new int[slots];
+        slotNbColors = new int[slots];
+        slotColors = new int[slots * maxColors];
+        freeSlots = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            freeSlots[nbFreeSlots++] = slots - 1 - i;
+        }
+        windowSizes = new int[window];
+        windowColors = new int[window];
+        maxSizes = new int[window];
+        maxPositions = new long[window];
+        colorCounts = new int[16];
+        /*
+         * Like BinPackingSolver, the packer starts with one empty bin.
+         */
+        openBin();
+    }
+
+    /**
+     * Packs one item and returns the bin where it was packed. Bins are
+     * numbered from zero in the order they are opened.
+     * <p>
+     * @param size The size of the item.
+     * @param color The color of the item (a non-negative integer).
+     * @return The bin where the item was packed, or -1 if the item is larger
+     * than the capacity of the bins.
+     */
+    public int pack(int size, int color) {
+        int index, slot;
+        Heuristic selected;
+        if (size > maxCapacity) {
+            return -1;
+        }
+        add(size, color);
+        selected = heuristic;
+        if (selected == null) {
+            for (int i = 0; i < features.length; i++) {
+                state[i] = getFeature(features[i]);
+            }
+            selected = hyperHeuristic.getHeuristic(state);
+        }
+        index = select(selected, size, color);
+        if (index < 0) {
+            index = openBin();
+        }
+        slot = open[index];
+        /*
+         * The item is packed.
+         */
+        slotResiduals[slot] -= size;
+        totalResidual -= size;
+        if (!contains(slot, color)) {
+            slotColors[slot * maxColors + slotNbColors[slot]++] = color;
+            totalColors++;
+        }
+        /*
+         * Full bins cannot longer be used.
+         */
+        if (slotResiduals[slot] == 0) {
+            close(index);
+        }
+        return slotIds[slot];
+    }
+
+    /**
+     * Returns the number of bins used so far.
+     * <p>
+     * @return The number of bins used so far.
+     */
+    public int getNbBins() {
+        return nbBins;
+    }
+
+    /**
+     * Returns the number of bins that are currently open.
+     * <p>
+     * @return The number of bins that are currently open.
+     */
+    public int getNbOpenBins() {
+        return nbOpen;
+    }
+
+    /**
+     * Returns the value of a specific feature of the current state. The
+     * features of the items are computed over the most recent items.
+     * <p>
+     * @param feature The feature to evaluate.
+     * @return The value of the feature.
+     */
+    public double getFeature(Feature feature) {
+        int n, max;
+        double mean, variance;
+        n = (int) Math.min(position, window);
+        max = maxCount > 0 ? maxSizes[maxHead] : 0;
+        switch (feature) {
+            case AVGL:
+                if (n == 0) {
+                    return 0;
+                }
+                return ((double) sum / n) / max;
+            case STDL:
+                if (n < 2) {
+                    return 0;
+                }
+                mean = (double) sum / n;
+                variance = Math.max(0, (sumSquares - n * mean * mean) / (n - 1));
+                return Math.sqrt(variance) / max;
+            case SMALL:
+                return n == 0 ? 0 : (double) small / n;
+            case VSMALL:
+                return n == 0 ? 0 : (double) verySmall / n;
+            case LARGE:
+                return n == 0 ? 0 : (double) large / n;
+            case VLARGE:
+                return n == 0 ? 0 : (double) veryLarge / n;
+            case COLORC:
+                if (nbDistinctColors == 0) {
+                    return 1;
+                }
+                return Math.min(1, (double) maxColors / nbDistinctColors);
+            case OBINS:
+                return (double) nbOpen / nbBins;
+            case AVGW:
+                return (double) totalResidual / nbBins;
+            case COLORF:
+                return (double) totalColors / nbBins;
+            default:
+                throw new IllegalArgumentException("Unknown feature " + feature + ".");
+        }
+    }
+
+    /**
+     * Adds an item to the sliding window (and removes the oldest one if the
+     * window is full).
+     * <p>
+     * @param size The size of the item.
+     * @param color The color of the item.
+     */
+    private void add(int size, int color) {
+        int index, tail;
+        index = (int) (position % window);
+        if (position >= window) {
+            update(windowSizes[index], windowColors[index], -1);
+        }
+        windowSizes[index] = size;
+        windowColors[index] = color;
+        update(size, color, 1);
+        /*
+         * Sliding maximum: a deque of decreasing sizes.
+         */
+        if (maxCount > 0 && maxPositions[maxHead] <= position - window) {
+            maxHead = (maxHead + 1) % window;
+            maxCount--;
+        }
+        while (maxCount > 0 && maxSizes[(maxHead + maxCount - 1) % window] <= size) {
+            maxCount--;
+        }
+        tail = (maxHead + maxCount) % window;
+        maxSizes[tail] = size;
+        maxPositions[tail] = position;
+        maxCount++;
+        position++;
+    }
+
+    /**
+     * Updates the statistics of the window when an item enters or leaves it.
+     * <p>
+     * @param size The size of the item.
+     * @param color The color of the item.
+     * @param delta 1 if the item enters the window, -1 if it leaves it.
+     */
+    private void update(int size, int color, int delta) {
+        sum += delta * size;
+        sumSquares += delta * (long) size * size;
+        if (size < 0.50 * maxCapacity) {
+            small += delta;
+        }
+        if (size < 0.25 * maxCapacity) {
+            verySmall += delta;
+        }
+        if (size > 0.50 * maxCapacity) {
+            large += delta;
+        }
+        if (size > 0.75 * maxCapacity) {
+            veryLarge += delta;
+        }
+        if (color >= colorCounts.length) {
+            colorCounts = Arrays.copyOf(colorCounts, Math.max(color + 1, 2 * colorCounts.length));
+        }
+        if (delta > 0 && colorCounts[color]++ == 0) {
+            nbDistinctColors++;
+        } else if (delta < 0 && --colorCounts[color] == 0) {
+            nbDistinctColors--;
+        }
+    }
+
+    /**
+     * Returns whether a bin contains an item of a given color or not.
+     * <p>
+     * @param slot The slot of the bin.
+     * @param color The color.
+     * @return <code>true</code> if the bin contains an item of the color,
+     * <code>false</code> otherwise.
+     */
+    private boolean contains(int slot, int color) {
+        int offset;
+        offset = slot * maxColors;
+        for (int i = 0; i < slotNbColors[slot]; i++) {
+            if (slotColors[offset + i] == color) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the position (among the open bins) of the bin selected by a
+     * heuristic to pack an item.
+     * <p>
+     * @param heuristic The heuristic.
+     * @param size The size of the item.
+     * @param color The color of the item.
+     * @return The position of the bin selected, or -1 if no open bin is
+     * suitable.
+     */
+    private int select(Heuristic heuristic, int size, int color) {
+        int slot, waste, waste2, tmp, selected, second;
+        boolean contains;
+        selected = -1;
+        second = -1;
+        waste = Integer.MAX_VALUE;
+        waste2 = -Integer.MAX_VALUE;
+        for (int i = 0; i < nbOpen; i++) {
+            slot = open[i];
+            if (size > slotResiduals[slot]) {
+                continue;
+            }
+            contains = contains(slot, color);
+            if (!contains && slotNbColors[slot] >= maxColors) {
+                continue;
+            }
+            switch (heuristic) {
+                case FIRST_FIT_SC:
+                case BEST_FIT_SC:
+                case WORST_FIT_SC:
+                case ALMOST_WORST_FIT_SC:
+                    if (!contains) {
+                        continue;
+                    }
+                    break;
+                case FIRST_FIT_DC:
+                case BEST_FIT_DC:
+                case WORST_FIT_DC:
+                case ALMOST_WORST_FIT_DC:
+                    if (contains) {
+                        continue;
+                    }
+                    break;
+            }
+            tmp = slotResiduals[slot] - size;
+            switch (heuristic) {
+                case FIRST_FIT:
+                case FIRST_FIT_SC:
+                case FIRST_FIT_DC:
+                    return i;
+                case BEST_FIT:
+                case BEST_FIT_SC:
+                case BEST_FIT_DC:
+                    if (tmp < waste) {
+                        selected = i;
+                        waste = tmp;
+                    }
+                    break;
+                case WORST_FIT:
+                case WORST_FIT_SC:
+                case WORST_FIT_DC:
+                    if (selected < 0 || tmp > waste) {
+                        selected = i;
+                        waste = tmp;
+                    }
+                    break;
+                default:
+                    /*
+                     * Almost worst fit: keeps the largest and the second largest.
+                     */
+                    if (selected < 0 || tmp > waste) {
+                        second = selected;
+                        waste2 = selected < 0 ? -Integer.MAX_VALUE : waste;
+                        selected = i;
+                        waste = tmp;
+                    } else if (tmp > waste2) {
+                        second = i;
+                        waste2 = tmp;
+                    }
+            }
+        }
+        return second >= 0 ? second : selected;
+    }
+
+    /**
+     * Opens a new bin. If the maximum number of open bins has been reached,
+     * the fullest open bin is closed first.
+     * <p>
+     * @return The position of the new bin among the open bins.
+     */
+    private int openBin() {
+        int slot, fullest;
+        if (nbOpen == maxOpenBins) {
+            fullest = 0;
+            for (int i = 1; i < nbOpen; i++) {
+                if (slotResiduals[open[i]] < slotResiduals[open[fullest]]) {
+                    fullest = i;
+                }
+            }
+            close(fullest);
+        }
+        if (nbFreeSlots == 0) {
+            grow();
+        }
+        slot = freeSlots[--nbFreeSlots];
+        slotIds[slot] = nbBins++;
+        slotResiduals[slot] = maxCapacity;
+        slotNbColors[slot] = 0;
+        totalResidual += maxCapacity;
+        open[nbOpen++] = slot;
+        return nbOpen - 1;
+    }
+
+    /**
+     * Closes the open bin at a given position.
+     * <p>
+     * @param index The position of the bin among the open bins.
+     */
+    private void close(int index) {
+        freeSlots[nbFreeSlots++] = open[index];
+        System.arraycopy(open, index + 1, open, index, nbOpen - index - 1);
+        nbOpen--;
+    }
+
+    /**
+     * Doubles the number of slots for open bins.
+     */
+    private void grow() {
+        int slots, length;
+        length = open.length;
+        slots = (int) Math.min((long) maxOpenBins, 2L * length);
+        open = Arrays.copyOf(open, slots);
+        slotIds = Arrays.copyOf(slotIds, slots);
+        slotResiduals = Arrays.copyOf(slotResiduals, slots);
+        slotNbColors = Arrays.copyOf(slotNbColors, slots);
+        slotColors = Arrays.copyOf(slotColors, slots * maxColors);
+        freeSlots = Arrays.copyOf(freeSlots, slots);
+        for (int i = slots - 1; i >= length; i--) {
+            freeSlots[nbFreeSlots++] = i;
+        }
+    }
+
+}
@@ -0,0 +1,317 @@
+package BinPacking.Solver;
+
+import BinPacking.Problem.Bin;
+import BinPacking.Problem.BinPackingProblem;
+import BinPacking.Problem.Item;
+import BinPacking.Utils.Metrics;
+import BinPacking.Utils.ResultWriter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Provides the methods to solve an instance of the one dimensional class
+ * constrained bin packing problem with a portfolio of heuristics (and,
+ * optionally, a hyper-heuristic) raced in parallel, keeping the best solution.
+ * <p>
+ * Every candidate packs the instance in its own thread with its own
+ * {@link BinPackingSolver}; the instance and its items are shared and never
+ * modified (the hyper-heuristic is frozen at the start of every solve, see
+ * {@link HyperHeuristic#freeze()}, so its candidate never changes the
+ * hyper-heuristic). The solution with the fewest bins wins (ties are broken by the
+ * lowest AVGW and then by the order of the candidates). Since a solver never
+ * uses fewer bins as it packs more items, a candidate is stopped as soon as it
+ * uses more bins than the best complete solution found so far, since it can no
+ * longer win. The time spent by every candidate, and whether it was stopped,
+ * is returned with the winner.
+ * <p>
+ * @version 1.0
+ */
+public class PortfolioSolver {
+
+    private static final LongAdder PRUNED = Metrics.counter("portfolio.pruned");
+
+    private final Heuristic[] heuristics;
+    private final HyperHeuristic hyperHeuristic;
+
+    /**
+     * Creates a new instance of <code>PortfolioSolver</code> with all the
+     * heuristics.
+     */
+    public PortfolioSolver() {
+        this(Heuristic.values(), null);
+    }
+
+    /**
+     * Creates a new instance of <code>PortfolioSolver</code> with all the
+     * heuristics and a hyper-heuristic.
+     * <p>
+     * @param hyperHeuristic The hyper-heuristic raced with the heuristics.
+     */
+    public PortfolioSolver(HyperHeuristic hyperHeuristic) {
+        this(Heuristic.values(), hyperHeuristic);
+    }
+
+    /**
+     * Creates a new instance of <code>PortfolioSolver</code>.
+     * <p>
+     * @param heuristics The heuristics raced.
+     * @param hyperHeuristic The hyper-heuristic raced with the heuristics, or
+     * <code>null</code> to race only the heuristics.
+     * @throws IllegalArgumentException If the portfolio has no candidates.
+     */
+    public PortfolioSolver(Heuristic[] heuristics, HyperHeuristic hyperHeuristic) {
+        if (heuristics.length == 0 && hyperHeuristic == null) {
+            throw new IllegalArgumentException("The portfolio must have at least one heuristic or a hyper-heuristic.");
+        }
+        this.heuristics = heuristics.clone();
+        this.hyperHeuristic = hyperHeuristic;
+    }
+
+    /**
+     * Solves an instance with every candidate of the portfolio at the same
+     * time.
+     * <p>
+     * @param problem The bin packing problem instance to solve.
+     * @return The best solution and the time spent by every candidate.
+     */
+    public Result solve(BinPackingProblem problem) {
+        int nbCandidates, winner;
+        long start;
+        AtomicInteger best;
+        Timing[] timings;
+        BinPackingSolver[] solvers;
+        HyperHeuristic model;
+        nbCandidates = heuristics.length + (hyperHeuristic == null ? 0 : 1);
+        best = new AtomicInteger(Integer.MAX_VALUE);
+        timings = new Timing[nbCandidates];
+        solvers = new BinPackingSolver[nbCandidates];
+        start = System.nanoTime();
+        model = hyperHeuristic == null ? null : hyperHeuristic.freeze();
+        IntStream.range(0, nbCandidates).parallel().forEach(c -> {
+            solvers[c] = new BinPackingSolver(problem);
+            timings[c] = race(c, solvers[c], model, problem.getMaxCapacity(), best);
+        });
+        /*
+         * Selects the best complete solution.
+         */
+        winner = -1;
+        for (int c = 0; c < nbCandidates; c++) {
+            if (!timings[c].pruned && (winner < 0 || timings[c].nbBins < timings[winner].nbBins
+                    || (timings[c].nbBins == timings[winner].nbBins && timings[c].avgw < timings[winner].avgw))) {
+                winner = c;
+            }
+        }
+        return new Result(problem.getFileName(), timings[winner].name, solvers[winner].getSolution(), timings[winner].nbBins,
+                timings[winner].avgw, timings, System.nanoTime() - start);
+    }
+
+    /**
+     * Packs an instance with one candidate until it finishes or can no longer
+     * win.
+     * <p>
+     * @param c The position of the candidate.
+     * @param solver The solver of the candidate.
+     * @param model The frozen hyper-heuristic (used if the candidate is the
+     * hyper-heuristic).
+     * @param maxCapacity The capacity of the bins.
+     * @param best The number of bins of the best complete solution so far.
+     * @return The time spent by the candidate.
+     */
+    private Timing race(int c, BinPackingSolver solver, HyperHeuristic model, int maxCapacity, AtomicInteger best) {
+        int nbItems;
+        long start;
+        Item item;
+        Heuristic heuristic;
+        start = System.nanoTime();
+        nbItems = solver.getItems().size();
+        while (solver.getItems().size() > 1) {
+            if (solver.getNbBins() > best.get()) {
+                if (Metrics.isEnabled()) {
+                    PRUNED.increment();
+                }
+                return new Timing(getName(c), System.nanoTime() - start, solver.getNbBins(), Double.NaN,
+                        nbItems - solver.getItems().size(), true);
+            }
+            item = solver.next();
+            if (item.getSize() <= maxCapacity) {
+                heuristic = c < heuristics.length ? heuristics[c] : model.getHeuristic(solver);
+                solver.place(solver.selectBin(heuristic, item), item);
+            }
+        }
+        best.accumulateAndGet(solver.getNbBins(), Math::min);
+        return new Timing(getName(c), System.nanoTime() - start, solver.getNbBins(), solver.getFeature(Feature.AVGW),
+                nbItems - solver.getItems().size(), false);
+    }
+
+    private String getName(int c) {
+        return c < heuristics.length ? heuristics[c].toString() : hyperHeuristic.getClass().getSimpleName();
+    }
+
+    /**
+     * The time spent by one candidate of the portfolio.
+     */
+    public static class Timing {
+
+        private final String name;
+        private final long nanos;
+        private final int nbBins, nbItems;
+        private final double avgw;
+        private final boolean pruned;
+
+        Timing(String name, long nanos, int nbBins, double avgw, int nbItems, boolean pruned) {
+            this.name = name;
+            this.nanos = nanos;
+            this.nbBins = nbBins;
+            this.avgw = avgw;
+            this.nbItems = nbItems;
+            this.pruned = pruned;
+        }
+
+        /**
+         * Returns the name of the candidate.
+         * <p>
+         * @return The name of the candidate.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the time spent by the candidate, in nanoseconds.
+         * <p>
+         * @return The time spent by the candidate.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the number of bins used by the candidate when it finished or
+         * was stopped.
+         * <p>
+         * @return The number of bins used by the candidate.
+         */
+        public int getNbBins() {
+            return nbBins;
+        }
+
+        /**
+         * Returns the number of items processed by the candidate before it
+         * finished or was stopped.
+         * <p>
+         * @return The number of items processed by the candidate.
+         */
+        public int getNbItems() {
+            return nbItems;
+        }
+
+        /**
+         * Returns <code>true</code> if the candidate was stopped because it
+         * could no longer win, or <code>false</code> if it finished.
+         * <p>
+         * @return <code>true</code> if the candidate was stopped.
+         */
+        public boolean isPruned() {
+            return pruned;
+        }
+
+        @Override
+        public String toString() {
+            return name + " | " + ResultWriter.format(nanos / 1e6) + " ms | bins " + nbBins + " | items " + nbItems
+                    + (pruned ? " | pruned" : " | avgw " + ResultWriter.format(avgw));
+        }
+    }
+
+    /**
+     * The best solution found by a portfolio.
+     */
+    public static class Result {
+
+        private final String name, winner;
+        private final List<Bin> solution;
+        private final int nbBins;
+        private final double avgw;
+        private final Timing[] timings;
+        private final long nanos;
+
+        Result(String name, String winner, List<Bin> solution, int nbBins, double avgw, Timing[] timings, long nanos) {
+            this.name = name;
+            this.winner = winner;
+            this.solution = solution;
+            this.nbBins = nbBins;
+            this.avgw = avgw;
+            this.timings = timings;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Returns the name of the candidate that found the best solution.
+         * <p>
+         * @return The name of the winner.
+         */
+        public String getWinner() {
+            return winner;
+        }
+
+        /**
+         * Returns the best solution.
+         * <p>
+         * @return The best solution.
+         */
+        public List<Bin> getSolution() {
+            return solution;
+        }
+
+        /**
+         * Returns the number of bins of the best solution.
+         * <p>
+         * @return The number of bins of the best solution.
+         */
+        public int getNbBins() {
+            return nbBins;
+        }
+
+        /**
+         * Returns the AVGW of the best solution.
+         * <p>
+         * @return The AVGW of the best solution.
+         */
+        public double getAvgw() {
+            return avgw;
+        }
+
+        /**
+         * Returns the time spent by every candidate, in the order of the
+         * portfolio.
+         * <p>
+         * @return The time spent by every candidate.
+         */
+        public Timing[] getTimings() {
+            return timings.clone();
+        }
+
+        /**
+         * Returns the time spent by the whole portfolio, in nanoseconds.
+         * <p>
+         * @return The time spent by the whole portfolio.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder string;
+            string = new StringBuilder();
+            string.append(name).append(" | winner ").append(winner).append(" | bins ").append(nbBins)
+                    .append(" | avgw ").append(ResultWriter.format(avgw)).append(" | ").append(ResultWriter.format(nanos / 1e6)).append(" ms");
+            for (Timing timing : timings) {
+                string.append("\n  ").append(timing);
+            }
+            return string.toString();
+        }
+    }
+
+}
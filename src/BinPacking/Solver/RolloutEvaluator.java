@@ -0,0 +1,194 @@
+package BinPacking.Solver;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Provides the methods to estimate the cost of applying each heuristic in the
+ * current state of a solver by looking ahead a bounded number of items.
+ * <p>
+ * Every candidate heuristic packs the next item on its own copy of the solver
+ * and the copy then continues for <code>horizon - 1</code> more items under a
+ * default policy (the candidate itself, unless another heuristic is given).
+ * The cost of the candidate is the AVGW of its copy at the end of the rollout,
+ * so a horizon of one is the usual one-step lookahead and larger horizons
+ * trade evaluation time for less myopic estimates. The copies are independent,
+ * so the candidates can be evaluated in parallel.
+ * <p>
+ * The costs can be memoized in a {@link TranspositionTable}, so a state that
+ * recurs (in a later epoch, or when training with another seed) is not
+ * evaluated again.
+ * <p>
+ * @version 1.0
+ */
+public class RolloutEvaluator {
+
+    private static TranspositionTable shared;
+
+    private final int horizon;
+    private final Heuristic policy;
+    private final boolean parallel;
+    private final TranspositionTable table;
+    private final long salt;
+
+    /**
+     * Creates a new instance of <code>RolloutEvaluator</code>.
+     * <p>
+     * @param horizon The number of items packed in every rollout (at least
+     * one).
+     * @param policy The heuristic used after the first item, or
+     * <code>null</code> to continue with the candidate being evaluated.
+     * @param parallel Whether the candidates are evaluated in parallel or not.
+     */
+    public RolloutEvaluator(int horizon, Heuristic policy, boolean parallel) {
+        this(horizon, policy, parallel, null);
+    }
+
+    /**
+     * Creates a new instance of <code>RolloutEvaluator</code> that memoizes
+     * the costs in a table. The table can be shared by evaluators with
+     * different horizons or policies.
+     * <p>
+     * @param horizon The number of items packed in every rollout (at least
+     * one).
+     * @param policy The heuristic used after the first item, or
+     * <code>null</code> to continue with the candidate being evaluated.
+     * @param parallel Whether the candidates are evaluated in parallel or not.
+     * @param table The table where the costs are memoized, or
+     * <code>null</code> to evaluate every candidate every time.
+     */
+    public RolloutEvaluator(int horizon, Heuristic policy, boolean parallel, TranspositionTable table) {
+        this.horizon = Math.max(1, horizon);
+        this.policy = policy;
+        this.parallel = parallel;
+        this.table = table;
+        /*
+         * Costs obtained with different horizons or policies must not be mixed.
+         */
+        salt = (this.horizon * 0x9E3779B97F4A7C15L) ^ ((policy == null ? 0 : policy.ordinal() + 1) * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    /**
+     * Creates a new instance of <code>RolloutEvaluator</code> configured with
+     * the system properties <code>binpacking.horizon</code> (1 by default),
+     * <code>binpacking.rolloutPolicy</code> (the name of a heuristic, the
+     * candidate itself by default) and <code>binpacking.rolloutParallel</code>
+     * (true by default, only used when the horizon is larger than one) and
+     * <code>binpacking.lookaheadTable</code> (the number of states memoized in
+     * a table shared by all these evaluators, 65536 by default, or zero to
+     * disable the table).
+     * <p>
+     * @return A new evaluator configured with the system properties.
+     */
+    public static RolloutEvaluator fromSystemProperties() {
+        String policy;
+        int horizon;
+        horizon = Integer.getInteger("binpacking.horizon", 1);
+        policy = System.getProperty("binpacking.rolloutPolicy");
+        return new RolloutEvaluator(
+                horizon,
+                policy == null ? null : Heuristic.valueOf(policy.trim().toUpperCase()),
+                horizon > 1 && Boolean.parseBoolean(System.getProperty("binpacking.rolloutParallel", "true")),
+                getSharedTable()
+        );
+    }
+
+    /**
+     * Returns the table shared by the evaluators configured with the system
+     * properties.
+     * <p>
+     * @return The shared table, or <code>null</code> if it is disabled.
+     */
+    public static synchronized TranspositionTable getSharedTable() {
+        int capacity;
+        capacity = Integer.getInteger("binpacking.lookaheadTable", 1 << 16);
+        if (shared == null && capacity > 0) {
+            shared = new TranspositionTable(capacity);
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the number of items packed in every rollout.
+     * <p>
+     * @return The number of items packed in every rollout.
+     */
+    public int getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Returns the cost (the AVGW at the end of the rollout) of every candidate
+     * heuristic in the current state of a solver. The solver is not modified.
+     * <p>
+     * @param solver The solver in its current state.
+     * @param candidates The heuristics to evaluate.
+     * @return The cost of every candidate, in the same order.
+     */
+    public double[] evaluate(BinPackingSolver solver, Heuristic[] candidates) {
+        int nbMissing;
+        long hash;
+        int[] missing;
+        double[] costs;
+        costs = new double[candidates.length];
+        if (table == null) {
+            if (parallel && candidates.length > 1) {
+                IntStream.range(0, candidates.length).parallel().forEach(i -> costs[i] = rollout(solver, candidates[i]));
+            } else {
+                for (int i = 0; i < candidates.length; i++) {
+                    costs[i] = rollout(solver, candidates[i]);
+                }
+            }
+            return costs;
+        }
+        /*
+         * Only the candidates whose cost is not in the table are evaluated.
+         */
+        hash = solver.getStateHash() ^ salt;
+        missing = new int[candidates.length];
+        nbMissing = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            costs[i] = table.get(hash, candidates[i]);
+            if (Double.isNaN(costs[i])) {
+                missing[nbMissing++] = i;
+            }
+        }
+        if (parallel && nbMissing > 1) {
+            IntStream.of(Arrays.copyOf(missing, nbMissing)).parallel().forEach(i -> costs[i] = rollout(solver, candidates[i]));
+        } else {
+            for (int k = 0; k < nbMissing; k++) {
+                costs[missing[k]] = rollout(solver, candidates[missing[k]]);
+            }
+        }
+        for (int k = 0; k < nbMissing; k++) {
+            table.put(hash, candidates[missing[k]], costs[missing[k]]);
+        }
+        return costs;
+    }
+
+    /**
+     * Returns the table where the costs are memoized.
+     * <p>
+     * @return The table where the costs are memoized, or <code>null</code>.
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the cost of one candidate heuristic.
+     * <p>
+     * @param solver The solver in its current state.
+     * @param candidate The heuristic to evaluate.
+     * @return The AVGW at the end of the rollout.
+     */
+    private double rollout(BinPackingSolver solver, Heuristic candidate) {
+        BinPackingSolver copy;
+        copy = new BinPackingSolver(solver);
+        for (int i = 0; i < horizon && !copy.getItems().isEmpty(); i++) {
+            copy.solveState(i == 0 || policy == null ? candidate : policy);
+        }
+        return copy.getFeature(Feature.AVGW);
+    }
+
+}
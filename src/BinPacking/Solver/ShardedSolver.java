@@ -0,0 +1,482 @@
+package BinPacking.Solver;
+
+import BinPacking.Problem.Bin;
+import BinPacking.Problem.BinPackingProblem;
+import BinPacking.Problem.Item;
+import BinPacking.Utils.ResultWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Provides an approximate parallel solver for very large instances of the one
+ * dimensional class constrained bin packing problem.
+ * <p>
+ * The sequence of items is split into shards of consecutive items, and every
+ * shard is packed in its own thread by a {@link BinPackingSolver} with the
+ * same heuristic (or with an immutable copy of the same hyper-heuristic, see
+ * {@link HyperHeuristic#freeze()}, whose features are computed over the shard
+ * only). The full bins of every shard are kept as they are. In the merge
+ * phase, the partially filled bins of all the shards are consolidated: from
+ * the least loaded, every bin is emptied if each of its items (the largest
+ * first) can be moved to the partially filled bin with the least residual
+ * capacity that can hold it without exceeding the capacity or the maximum
+ * number of colors; otherwise, the bin is left as it was. The items the
+ * shards leave unpacked at their end (other than at the end of the instance)
+ * are then packed in the same way, so the solution packs the same items as
+ * the sequential solver.
+ * <p>
+ * The merge phase can also improve a sequential solution, so
+ * {@link #compare(Heuristic)} measures the gap of the sharded solution against
+ * the sequential one consolidated in the same way, and reports the bins saved
+ * by the merge phase on the sequential solution separately.
+ * <p>
+ * @version 1.0
+ */
+public class ShardedSolver {
+
+    /*
+     * The maximum number of candidate bins examined for every item in the
+     * merge phase, so the merge stays close to linear.
+     */
+    private static final int MERGE_SCAN = 64;
+
+    private final BinPackingProblem problem;
+    private final int nbShards;
+    private int nbShardBins, nbMerged;
+
+    /**
+     * Creates a new instance of <code>ShardedSolver</code> with one shard per
+     * available processor.
+     * <p>
+     * @param problem The bin packing problem instance to solve.
+     */
+    public ShardedSolver(BinPackingProblem problem) {
+        this(problem, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance of <code>ShardedSolver</code>.
+     * <p>
+     * @param problem The bin packing problem instance to solve.
+     * @param nbShards The number of shards (at most one per item).
+     */
+    public ShardedSolver(BinPackingProblem problem, int nbShards) {
+        this.problem = problem;
+        this.nbShards = Math.max(1, Math.min(nbShards, problem.getNbItems()));
+    }
+
+    /**
+     * Solves the instance by packing every shard with one specific heuristic.
+     * <p>
+     * @param heuristic The heuristic used to pack the shards.
+     * @return A solution to the bin packing problem instance.
+     */
+    public List<Bin> solve(Heuristic heuristic) {
+        return solve(heuristic, null);
+    }
+
+    /**
+     * Solves the instance by packing every shard with a hyper-heuristic.
+     * <p>
+     * @param hyperHeuristic The hyper-heuristic used to pack the shards.
+     * @return A solution to the bin packing problem instance.
+     */
+    public List<Bin> solve(HyperHeuristic hyperHeuristic) {
+        return solve(null, hyperHeuristic);
+    }
+
+    /**
+     * Returns the number of shards.
+     * <p>
+     * @return The number of shards.
+     */
+    public int getNbShards() {
+        return nbShards;
+    }
+
+    /**
+     * Returns the number of bins used by all the shards in the last solve,
+     * before the merge phase.
+     * <p>
+     * @return The number of bins used by the shards before the merge phase.
+     */
+    public int getNbShardBins() {
+        return nbShardBins;
+    }
+
+    /**
+     * Returns the number of bins emptied by the merge phase in the last solve.
+     * <p>
+     * @return The number of bins emptied by the merge phase.
+     */
+    public int getNbMerged() {
+        return nbMerged;
+    }
+
+    /**
+     * Solves the instance with one specific heuristic, both sequentially and
+     * in shards, and returns the difference between both solutions. The
+     * sequential solution is also consolidated by the merge phase, so the gap
+     * only measures the cost of the sharding.
+     * <p>
+     * @param heuristic The heuristic.
+     * @return The comparison of the sharded and the sequential solutions.
+     */
+    public Report compare(Heuristic heuristic) {
+        return compare(heuristic, null);
+    }
+
+    /**
+     * Solves the instance with a hyper-heuristic, both sequentially and in
+     * shards, and returns the difference between both solutions. The
+     * sequential solution is also consolidated by the merge phase, so the gap
+     * only measures the cost of the sharding.
+     * <p>
+     * @param hyperHeuristic The hyper-heuristic.
+     * @return The comparison of the sharded and the sequential solutions.
+     */
+    public Report compare(HyperHeuristic hyperHeuristic) {
+        return compare(null, hyperHeuristic);
+    }
+
+    private Report compare(Heuristic heuristic, HyperHeuristic hyperHeuristic) {
+        int sequentialBins, mergedBins, shardedBins;
+        long start, sequentialTime, shardedTime;
+        List<Bin> solution, bins;
+        BinPackingSolver solver;
+        start = System.nanoTime();
+        solver = new BinPackingSolver(problem);
+        if (heuristic != null) {
+            solution = solver.solve(heuristic);
+        } else {
+            solution = solver.solve(hyperHeuristic);
+        }
+        sequentialTime = System.nanoTime() - start;
+        /*
+         * Empty bins are not counted, as in the sharded solution.
+         */
+        bins = new ArrayList();
+        for (Bin bin : solution) {
+            if (!bin.getItems().isEmpty()) {
+                bins.add(bin);
+            }
+        }
+        sequentialBins = bins.size();
+        mergedBins = merge(bins, new ArrayList()).size();
+        start = System.nanoTime();
+        shardedBins = solve(heuristic, hyperHeuristic).size();
+        shardedTime = System.nanoTime() - start;
+        return new Report(problem.getFileName(), nbShards, sequentialBins, mergedBins, shardedBins, sequentialTime, shardedTime);
+    }
+
+    private List<Bin> solve(Heuristic heuristic, HyperHeuristic hyperHeuristic) {
+        int nbItems;
+        Item[] items;
+        List<Bin> bins;
+        List<Item> leftovers;
+        List<Bin>[] solutions;
+        BinPackingSolver[] solvers;
+        HyperHeuristic model;
+        items = problem.getItems();
+        nbItems = items.length;
+        solvers = new BinPackingSolver[nbShards];
+        solutions = new List[nbShards];
+        for (int k = 0; k < nbShards; k++) {
+            solvers[k] = new BinPackingSolver(new BinPackingProblem(problem.getFileName(), problem.getMaxCapacity(), problem.getMaxColors(),
+                    Arrays.copyOfRange(items, (int) ((long) nbItems * k / nbShards), (int) ((long) nbItems * (k + 1) / nbShards))));
+        }
+        /*
+         * Packs the shards.
+         */
+        if (heuristic != null) {
+            IntStream.range(0, nbShards).parallel().forEach(k -> solutions[k] = solvers[k].solve(heuristic));
+        } else {
+            model = hyperHeuristic.freeze();
+            IntStream.range(0, nbShards).parallel().forEach(k -> solutions[k] = solvers[k].solve(model));
+        }
+        /*
+         * Collects the bins and the items left at the end of every shard but the last one.
+         */
+        bins = new ArrayList();
+        leftovers = new ArrayList();
+        for (int k = 0; k < nbShards; k++) {
+            for (Bin bin : solutions[k]) {
+                if (!bin.getItems().isEmpty()) {
+                    bins.add(bin);
+                }
+            }
+            if (k < nbShards - 1) {
+                for (Item item : solvers[k].getItems()) {
+                    if (item.getSize() <= problem.getMaxCapacity()) {
+                        leftovers.add(item);
+                    }
+                }
+            }
+        }
+        nbShardBins = bins.size();
+        return merge(bins, leftovers);
+    }
+
+    /**
+     * Consolidates the partially filled bins of the shards and packs the items
+     * left by the shards.
+     * <p>
+     * @param bins The bins used by the shards.
+     * @param leftovers The items left unpacked by the shards.
+     * @return The consolidated solution.
+     */
+    private List<Bin> merge(List<Bin> bins, List<Item> leftovers) {
+        boolean placed;
+        Bin target, copy;
+        List<Bin> solution, partial;
+        List<Item> items;
+        Map<Bin, Bin> copies;
+        TreeMap<Integer, Set<Bin>> residuals;
+        solution = new ArrayList();
+        partial = new ArrayList();
+        residuals = new TreeMap();
+        for (Bin bin : bins) {
+            if (bin.getCapacity() == 0) {
+                solution.add(bin);
+            } else {
+                partial.add(bin);
+                add(residuals, bin);
+            }
+        }
+        /*
+         * Tries to empty the least loaded bins by moving every item to the
+         * fullest bin that can hold it. The moves are made on copies of the
+         * targets, so they can be undone when some item does not fit.
+         */
+        partial.sort((a, b) -> Integer.compare(b.getCapacity(), a.getCapacity()));
+        nbMerged = 0;
+        for (Bin bin : partial) {
+            if (!remove(residuals, bin)) {
+                continue;
+            }
+            items = new ArrayList(bin.getItems());
+            items.sort((a, b) -> Integer.compare(b.getSize(), a.getSize()));
+            copies = new IdentityHashMap();
+            placed = true;
+            for (Item item : items) {
+                target = find(residuals, item);
+                if (target == null) {
+                    placed = false;
+                    break;
+                }
+                remove(residuals, target);
+                if (!copies.containsKey(target)) {
+                    copy = new Bin(target);
+                    copies.put(copy, target);
+                    target = copy;
+                }
+                target.pack(item);
+                add(residuals, target);
+            }
+            if (placed) {
+                nbMerged++;
+                for (Bin full : copies.keySet()) {
+                    if (full.getCapacity() == 0) {
+                        remove(residuals, full);
+                        solution.add(full);
+                    }
+                }
+            } else {
+                for (Map.Entry<Bin, Bin> entry : copies.entrySet()) {
+                    remove(residuals, entry.getKey());
+                    add(residuals, entry.getValue());
+                }
+                add(residuals, bin);
+            }
+        }
+        /*
+         * Packs the items left by the shards.
+         */
+        for (Item item : leftovers) {
+            target = find(residuals, item);
+            if (target == null) {
+                target = new Bin(problem.getMaxCapacity(), problem.getMaxColors());
+            } else {
+                remove(residuals, target);
+            }
+            target.pack(item);
+            if (target.getCapacity() > 0) {
+                add(residuals, target);
+            } else {
+                solution.add(target);
+            }
+        }
+        for (Set<Bin> set : residuals.values()) {
+            solution.addAll(set);
+        }
+        return solution;
+    }
+
+    /**
+     * Returns the bin with the least residual capacity that can hold an item.
+     * <p>
+     * @param residuals The partially filled bins, by residual capacity.
+     * @param item The item.
+     * @return The bin that can hold the item, or <code>null</code> if none of
+     * the bins examined can.
+     */
+    private Bin find(TreeMap<Integer, Set<Bin>> residuals, Item item) {
+        int scanned;
+        scanned = 0;
+        for (Set<Bin> set : residuals.tailMap(Math.max(1, item.getSize()), true).values()) {
+            for (Bin bin : set) {
+                if (bin.canPack(item)) {
+                    return bin;
+                }
+                if (++scanned == MERGE_SCAN) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void add(TreeMap<Integer, Set<Bin>> residuals, Bin bin) {
+        residuals.computeIfAbsent(bin.getCapacity(), key -> new LinkedHashSet()).add(bin);
+    }
+
+    private static boolean remove(TreeMap<Integer, Set<Bin>> residuals, Bin bin) {
+        Set<Bin> set;
+        set = residuals.get(bin.getCapacity());
+        if (set == null || !set.remove(bin)) {
+            return false;
+        }
+        if (set.isEmpty()) {
+            residuals.remove(bin.getCapacity());
+        }
+        return true;
+    }
+
+    /**
+     * The comparison of a sharded solution with the sequential one.
+     */
+    public static class Report {
+
+        private final String name;
+        private final int nbShards, sequentialBins, mergedBins, shardedBins;
+        private final long sequentialTime, shardedTime;
+
+        Report(String name, int nbShards, int sequentialBins, int mergedBins, int shardedBins, long sequentialTime, long shardedTime) {
+            this.name = name;
+            this.nbShards = nbShards;
+            this.sequentialBins = sequentialBins;
+            this.mergedBins = mergedBins;
+            this.shardedBins = shardedBins;
+            this.sequentialTime = sequentialTime;
+            this.shardedTime = shardedTime;
+        }
+
+        /**
+         * Returns the number of bins of the sequential solution.
+         * <p>
+         * @return The number of bins of the sequential solution.
+         */
+        public int getSequentialBins() {
+            return sequentialBins;
+        }
+
+        /**
+         * Returns the number of bins of the sequential solution after the
+         * merge phase.
+         * <p>
+         * @return The number of bins of the consolidated sequential solution.
+         */
+        public int getMergedBins() {
+            return mergedBins;
+        }
+
+        /**
+         * Returns the number of bins the merge phase saves on the sequential
+         * solution.
+         * <p>
+         * @return The number of bins saved by the merge phase alone.
+         */
+        public int getMergeGain() {
+            return sequentialBins - mergedBins;
+        }
+
+        /**
+         * Returns the number of bins of the sharded solution.
+         * <p>
+         * @return The number of bins of the sharded solution.
+         */
+        public int getShardedBins() {
+            return shardedBins;
+        }
+
+        /**
+         * Returns the number of bins the sharded solution uses in excess of
+         * the consolidated sequential one (negative if it uses fewer).
+         * <p>
+         * @return The gap in bins.
+         */
+        public int getGap() {
+            return shardedBins - mergedBins;
+        }
+
+        /**
+         * Returns the gap relative to the number of bins of the consolidated
+         * sequential solution.
+         * <p>
+         * @return The relative gap.
+         */
+        public double getRelativeGap() {
+            return mergedBins == 0 ? 0 : (double) getGap() / mergedBins;
+        }
+
+        /**
+         * Returns the time of the sequential solve divided by the time of the
+         * sharded solve.
+         * <p>
+         * @return The speedup of the sharded solve.
+         */
+        public double getSpeedup() {
+            return shardedTime == 0 ? 0 : (double) sequentialTime / shardedTime;
+        }
+
+        @Override
+        public String toString() {
+            return name + " | shards " + nbShards + " | sequential " + sequentialBins + " bins (" + sequentialTime / 1000000 + " ms)"
+                    + " | merged " + mergedBins + " bins (gain " + getMergeGain() + ")"
+                    + " | sharded " + shardedBins + " bins (" + shardedTime / 1000000 + " ms)"
+                    + " | gap " + getGap() + " (" + ResultWriter.format(100 * getRelativeGap()) + "%)"
+                    + " | speedup " + ResultWriter.format(getSpeedup());
+        }
+    }
+
+    /**
+     * Compares the sharded and the sequential solutions of an instance from
+     * the command line.
+     * <p>
+     * The arguments are: the name of the file of the instance, the heuristic
+     * and, optionally, the number of shards.
+     * <p>
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        ShardedSolver solver;
+        if (args.length < 2) {
+            System.out.println("Usage: ShardedSolver instance heuristic [shards]");
+            System.exit(1);
+        }
+        if (args.length > 2) {
+            solver = new ShardedSolver(new BinPackingProblem(args[0]), Integer.parseInt(args[2]));
+        } else {
+            solver = new ShardedSolver(new BinPackingProblem(args[0]));
+        }
+        System.out.println(solver.compare(Heuristic.valueOf(args[1].toUpperCase())));
+    }
+
+}
@@ -0,0 +1,138 @@
+package BinPacking.Solver;
+
+import java.util.Arrays;
+
+/**
+ * Provides the methods to record the decisions made by a hyper-heuristic while
+ * solving an instance (see
+ * {@link BinPackingSolver#solve(HyperHeuristic, TraceRecorder)}).
+ * <p>
+ * Every decision is appended to a compact buffer as it is made: the position
+ * of the item (as the number of items skipped since the previous decision),
+ * the heuristic applied, the position of the bin among the open bins and,
+ * optionally, the values of some features in the state where the heuristic
+ * was selected. Every feature is stored as the difference (exclusive or) with
+ * its previous value, without its trailing zeros, so the values that did not
+ * change take one byte. A recorder can be reused for several instances, but
+ * not by several threads at once.
+ * <p>
+ * @version 1.0
+ */
+public class TraceRecorder {
+
+    private final Feature[] features;
+    private final long[] previous;
+    private byte[] buffer;
+    private int size, nbSteps, lastStep;
+    private String name;
+    private long fingerprint;
+    private DecisionTrace trace;
+
+    /**
+     * Creates a new instance of <code>TraceRecorder</code> that records only
+     * the decisions.
+     */
+    public TraceRecorder() {
+        this(new Feature[0]);
+    }
+
+    /**
+     * Creates a new instance of <code>TraceRecorder</code> that records the
+     * decisions and the values of some features.
+     * <p>
+     * @param features The features recorded at every decision.
+     */
+    public TraceRecorder(Feature[] features) {
+        this.features = features.clone();
+        previous = new long[features.length];
+        buffer = new byte[256];
+    }
+
+    /**
+     * Returns the trace of the last instance solved with this recorder.
+     * <p>
+     * @return The trace of the last instance solved with this recorder, or
+     * <code>null</code> if no instance has been solved yet.
+     */
+    public DecisionTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Starts the trace of a new instance.
+     * <p>
+     * @param name The name of the instance.
+     * @param fingerprint The fingerprint of the instance.
+     */
+    void start(String name, long fingerprint) {
+        this.name = name;
+        this.fingerprint = fingerprint;
+        size = 0;
+        nbSteps = 0;
+        lastStep = -1;
+        Arrays.fill(previous, 0);
+    }
+
+    /**
+     * Records the heuristic selected for an item and the features of the
+     * state where it was selected. Must be followed by
+     * {@link #recordBin(int)}.
+     * <p>
+     * @param step The position of the item in the instance.
+     * @param heuristic The heuristic selected.
+     * @param vector The features of the state where the heuristic was
+     * selected.
+     */
+    void record(int step, Heuristic heuristic, FeatureVector vector) {
+        long bits, delta;
+        ensure(6 + features.length * 11);
+        putVarLong(step - lastStep - 1);
+        lastStep = step;
+        buffer[size++] = (byte) heuristic.ordinal();
+        for (int i = 0; i < features.length; i++) {
+            bits = Double.doubleToRawLongBits(vector.get(features[i]));
+            delta = bits ^ previous[i];
+            previous[i] = bits;
+            if (delta == 0) {
+                buffer[size++] = (byte) 64;
+            } else {
+                buffer[size++] = (byte) Long.numberOfTrailingZeros(delta);
+                putVarLong(delta >>> Long.numberOfTrailingZeros(delta));
+            }
+        }
+        nbSteps++;
+    }
+
+    /**
+     * Records the bin where the item was packed.
+     * <p>
+     * @param bin The position of the bin among the open bins (the number of
+     * open bins before the item was packed if a new bin was opened).
+     */
+    void recordBin(int bin) {
+        putVarLong(bin);
+    }
+
+    /**
+     * Completes the trace of the current instance.
+     */
+    void finish() {
+        trace = new DecisionTrace(name, fingerprint, features, nbSteps, Arrays.copyOf(buffer, size));
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    private void putVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+}
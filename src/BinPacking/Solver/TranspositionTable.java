@@ -0,0 +1,174 @@
+package BinPacking.Solver;
+
+import BinPacking.Utils.Metrics;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides a bounded table that memoizes the lookahead cost of every heuristic
+ * in a solver state.
+ * <p>
+ * The states are identified by their hash (see
+ * {@link BinPackingSolver#getStateHash()}), so the same state reached in
+ * different epochs, or by hyper-heuristics trained with different seeds,
+ * shares its entry. The table has a fixed number of slots; every state can
+ * only be stored in the slot given by its hash and a new state always
+ * replaces the previous one (the entries of the states seen most recently are
+ * kept). The entries are immutable and the slots are updated atomically, so
+ * the table can be shared by several threads. Hits, misses and evictions are
+ * counted by the table and, when the metrics are enabled, in
+ * <code>lookahead.table.*</code>.
+ * <p>
+ * @version 1.0
+ */
+public class TranspositionTable {
+
+    private static final LongAdder HITS = Metrics.counter("lookahead.table.hits");
+    private static final LongAdder MISSES = Metrics.counter("lookahead.table.misses");
+    private static final LongAdder EVICTIONS = Metrics.counter("lookahead.table.evictions");
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final LongAdder hits, misses, evictions;
+
+    /**
+     * Creates a new instance of <code>TranspositionTable</code>.
+     * <p>
+     * @param capacity The number of states that can be stored (rounded up to
+     * a power of two).
+     */
+    public TranspositionTable(int capacity) {
+        int size;
+        size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        entries = new AtomicReferenceArray(size);
+        mask = size - 1;
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+    }
+
+    /**
+     * Returns the cost stored for a heuristic in a state.
+     * <p>
+     * @param hash The hash of the state.
+     * @param heuristic The heuristic.
+     * @return The cost stored for the heuristic in the state, or
+     * <code>Double.NaN</code> if there is none.
+     */
+    public double get(long hash, Heuristic heuristic) {
+        Entry entry;
+        entry = entries.get(index(hash));
+        if (entry != null && entry.hash == hash && !Double.isNaN(entry.costs[heuristic.ordinal()])) {
+            hits.increment();
+            if (Metrics.isEnabled()) {
+                HITS.increment();
+            }
+            return entry.costs[heuristic.ordinal()];
+        }
+        misses.increment();
+        if (Metrics.isEnabled()) {
+            MISSES.increment();
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Stores the cost of a heuristic in a state.
+     * <p>
+     * @param hash The hash of the state.
+     * @param heuristic The heuristic.
+     * @param cost The cost of the heuristic in the state.
+     */
+    public void put(long hash, Heuristic heuristic, double cost) {
+        int i;
+        Entry entry, updated;
+        i = index(hash);
+        do {
+            entry = entries.get(i);
+            if (entry != null && entry.hash == hash) {
+                updated = new Entry(hash, entry.costs);
+            } else {
+                updated = new Entry(hash, null);
+            }
+            updated.costs[heuristic.ordinal()] = cost;
+        } while (!entries.compareAndSet(i, entry, updated));
+        if (entry != null && entry.hash != hash) {
+            evictions.increment();
+            if (Metrics.isEnabled()) {
+                EVICTIONS.increment();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of costs found in the table.
+     * <p>
+     * @return The number of costs found in the table.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of costs not found in the table.
+     * <p>
+     * @return The number of costs not found in the table.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of states replaced by other states.
+     * <p>
+     * @return The number of states replaced by other states.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the fraction of the costs requested that were found in the
+     * table.
+     * <p>
+     * @return The fraction of the costs requested that were found in the
+     * table.
+     */
+    public double getHitRate() {
+        long found, total;
+        found = hits.sum();
+        total = found + misses.sum();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    @Override
+    public String toString() {
+        return "hits " + getHits() + " | misses " + getMisses() + " | evictions " + getEvictions()
+                + " | hit rate " + String.format("%.4f", getHitRate());
+    }
+
+    private int index(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * The costs of the heuristics in one state.
+     */
+    private static class Entry {
+
+        private final long hash;
+        private final double[] costs;
+
+        Entry(long hash, double[] costs) {
+            this.hash = hash;
+            if (costs == null) {
+                this.costs = new double[Heuristic.values().length];
+                Arrays.fill(this.costs, Double.NaN);
+            } else {
+                this.costs = costs.clone();
+            }
+        }
+    }
+
+}
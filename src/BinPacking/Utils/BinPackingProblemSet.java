@@ -4,28 +4,41 @@ import BinPacking.Problem.BinPackingProblem;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 /**
  * Provides the methods to create and handle sets of one dimensional class
  * constrained bin packing problem instances.
  * <p>
+ * The instances in a folder are loaded when the set is created. The instances
+ * in an archive are read only when they are requested (see {@link #get(int)}
+ * and {@link #iterator()}), so only the instances in use are kept in memory.
+ * <p>
  * @author Jose Carlos Ortiz Bayliss (jcobayliss@tec.mx)
  * @version 1.0
  */
-public class BinPackingProblemSet {
+public class BinPackingProblemSet implements Iterable<BinPackingProblem> {
     
     private final BinPackingProblem[] instances;
+    private final CorpusArchive archive;
       
     /**
      * Creates a new instance of <code>BinPackingProblemSet</code>.
      * <p>
-     * @param folder The folder where the instances are stored.     
+     * @param folder The folder where the instances are stored, or an archive
+     * that contains them (see {@link CorpusArchive}).
      */
     public BinPackingProblemSet(String folder) {
         int i, n;
         List<String> fileNames;
         File file = new File(folder);
+        if (CorpusArchive.isArchive(folder)) {
+            instances = null;
+            archive = new CorpusArchive(folder);
+            return;
+        }
+        archive = null;
         if (!file.exists() || !file.isDirectory()) {
             //System.err.println("The path \'" + folder + "\'is not a valid directory.");
             //System.err.println("The system will halt.");
@@ -43,12 +56,44 @@ public class BinPackingProblemSet {
     }        
     
     /**
-     * Returns the bin packing problem instances contained in this set.
+     * Returns the number of instances in this set.
+     * <p>
+     * @return The number of instances in this set.
+     */
+    public int size() {
+        return archive == null ? instances.length : archive.size();
+    }
+    
+    /**
+     * Returns one of the instances in this set. The instances of an archive
+     * are read again every time they are requested.
+     * <p>
+     * @param i The position of the instance in this set.
+     * @return The instance.
+     */
+    public BinPackingProblem get(int i) {
+        return archive == null ? instances[i] : archive.get(i);
+    }
+    
+    /**
+     * Returns an iterator over the instances in this set.
+     * <p>
+     * @return An iterator over the instances in this set.
+     */
+    @Override
+    public Iterator<BinPackingProblem> iterator() {
+        return archive == null ? Arrays.asList(instances).iterator() : archive.iterator();
+    }
+    
+    /**
+     * Returns the bin packing problem instances contained in this set. The
+     * instances of an archive are all read at once, so the methods
+     * {@link #size()} and {@link #get(int)} are preferred for large sets.
      * <p>
      * @return The bin packing problem instances contained Sin this set.
      */
     public BinPackingProblem[] getInstances() {
-        return instances;
+        return archive == null ? instances : archive.getInstances();
     }
     
 }
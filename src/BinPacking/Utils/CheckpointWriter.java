@@ -0,0 +1,171 @@
+package BinPacking.Utils;
+
+import BinPacking.Events.FileWriteEvent;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Provides the methods to save checkpoints (snapshots of the state of a long
+ * computation) to disk without stopping the computation.
+ * <p>
+ * The snapshots are handed to a background thread that writes them to a
+ * temporary file, forces it to disk and renames it over the checkpoint, so
+ * the checkpoint file always contains a complete snapshot, even if the process
+ * is killed while writing. Only the most recent snapshot matters: if a new
+ * snapshot arrives while the previous one is still waiting to be written, the
+ * previous one is discarded.
+ * <p>
+ * @version 1.0
+ */
+public class CheckpointWriter implements AutoCloseable {
+
+    private final String fileName;
+    private final Thread writer;
+    private byte[] pending;
+    private boolean closed;
+    private IOException error;
+
+    /**
+     * Creates a new instance of <code>CheckpointWriter</code>.
+     * <p>
+     * @param fileName The file where the checkpoints will be saved.
+     */
+    public CheckpointWriter(String fileName) {
+        this.fileName = fileName;
+        pending = null;
+        closed = false;
+        writer = new Thread(new Writer(), "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the last checkpoint saved in a file.
+     * <p>
+     * @param fileName The file where the checkpoints are saved.
+     * @return The contents of the last checkpoint, or <code>null</code> if
+     * there is no checkpoint.
+     */
+    public static byte[] read(String fileName) {
+        try {
+            return java.nio.file.Files.readAllBytes(Paths.get(fileName));
+        } catch (java.nio.file.NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.out.println("An error occurred while attempting to read the file \'" + fileName + "\'.");
+            System.out.println("Exception: " + e.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+        return null;
+    }
+
+    /**
+     * Hands a snapshot to the background thread. The method returns
+     * immediately; the snapshot must not be modified afterwards.
+     * <p>
+     * @param snapshot The contents of the checkpoint.
+     */
+    public synchronized void save(byte[] snapshot) {
+        pending = snapshot;
+        notifyAll();
+    }
+
+    /**
+     * Waits until the last snapshot has been written and stops the background
+     * thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
+            System.out.println("Exception: " + error.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file and renames it over the
+     * checkpoint.
+     * <p>
+     * @param snapshot The contents of the checkpoint.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private void write(byte[] snapshot) throws IOException {
+        Path target, tmp;
+        FileOutputStream out;
+        FileWriteEvent event;
+        event = new FileWriteEvent();
+        event.begin();
+        target = Paths.get(fileName);
+        tmp = Paths.get(fileName + ".tmp");
+        out = new FileOutputStream(tmp.toFile(), false);
+        try {
+            out.write(snapshot);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        try {
+            java.nio.file.Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            java.nio.file.Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (event.shouldCommit()) {
+            event.fileName = fileName;
+            event.size = new File(fileName).length();
+            event.commit();
+        }
+    }
+
+    /**
+     * Writes the snapshots as they arrive, until the writer is closed.
+     */
+    private class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            byte[] snapshot;
+            while (true) {
+                synchronized (CheckpointWriter.this) {
+                    while (pending == null && !closed) {
+                        try {
+                            CheckpointWriter.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    if (pending == null) {
+                        return;
+                    }
+                    snapshot = pending;
+                    pending = null;
+                }
+                if (error == null) {
+                    try {
+                        write(snapshot);
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,565 @@
+package BinPacking.Utils;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Provides the statistical tests used to compare the results of several
+ * methods (heuristics or hyper-heuristics) on the same instances.
+ * <p>
+ * The results are given as arrays indexed by instance (one array per method,
+ * in the same order of instances), so the comparison can be done right after
+ * solving a set, without writing the results to files. Lower values are
+ * better (the results are costs, such as the AVGW of the solutions). The
+ * methods provided are the Wilcoxon signed-rank test for two methods, the
+ * Friedman test for several methods followed by the comparison of their mean
+ * ranks (with Holm's correction, as described by Demšar, 2006, either over
+ * all the pairs or over the comparisons with a control method),
+ * and bootstrap confidence intervals of the mean difference between two
+ * methods (the resamples are drawn in parallel from independent streams, so
+ * the interval depends only on the seed).
+ * <p>
+ * @version 1.0
+ */
+public abstract class Comparison {
+
+    /**
+     * The number of resamples drawn from every random stream by the
+     * bootstrap.
+     */
+    private static final int BOOTSTRAP_CHUNK = 1000;
+
+    /**
+     * The largest number of differences for which the exact distribution of
+     * the Wilcoxon statistic is used.
+     */
+    private static final int WILCOXON_EXACT = 50;
+
+    /**
+     * Returns the Wilcoxon signed-rank test of two paired samples (two-sided).
+     * The differences equal to zero are discarded. The p-value is exact for up
+     * to 50 differences without ties; otherwise it uses the normal
+     * approximation with tie and continuity corrections.
+     * <p>
+     * @param x The results of the first method.
+     * @param y The results of the second method, for the same instances.
+     * @return The smallest of the sums of the positive and negative ranks and
+     * the p-value of the test.
+     */
+    public static Test wilcoxon(double[] x, double[] y) {
+        int n, smallest;
+        double positive, total, mean, variance, ties, z;
+        double[] differences, ranks;
+        boolean tied;
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("The samples must have the same number of results.");
+        }
+        differences = new double[x.length];
+        n = 0;
+        for (int i = 0; i < x.length; i++) {
+            if (x[i] != y[i]) {
+                differences[n++] = x[i] - y[i];
+            }
+        }
+        if (n == 0) {
+            return new Test(0, 1);
+        }
+        differences = Arrays.copyOf(differences, n);
+        ranks = new double[n];
+        ties = rank(differences, ranks, true);
+        tied = ties > 0;
+        positive = 0;
+        for (int i = 0; i < n; i++) {
+            if (differences[i] > 0) {
+                positive += ranks[i];
+            }
+        }
+        total = n * (n + 1) / 2.0;
+        if (n <= WILCOXON_EXACT && !tied) {
+            smallest = (int) Math.min(positive, total - positive);
+            return new Test(smallest, Math.min(1, 2 * signedRankCdf(n, smallest)));
+        }
+        mean = total / 2;
+        variance = n * (n + 1.0) * (2.0 * n + 1) / 24 - ties / 48;
+        z = Math.max(0, Math.abs(positive - mean) - 0.5) / Math.sqrt(variance);
+        return new Test(Math.min(positive, total - positive), Math.min(1, 2 * normalSurvival(z)));
+    }
+
+    /**
+     * Returns the Friedman test of several methods on the same instances and
+     * the pairwise comparison of their mean ranks. The rank of every method is
+     * computed per instance (1 for the lowest result, ties share their mean
+     * rank).
+     * <p>
+     * @param results The results of every method (one row per method, one
+     * column per instance).
+     * @return The statistic, the p-value, the mean ranks and the adjusted
+     * p-values of the pairwise comparisons.
+     */
+    public static Friedman friedman(double[][] results) {
+        int k, n;
+        double sum, ties, statistic, pValue, se;
+        double[] column, ranks, meanRanks;
+        double[][] raw, pairs;
+        k = results.length;
+        n = k == 0 ? 0 : results[0].length;
+        if (k < 2 || n == 0) {
+            throw new IllegalArgumentException("The Friedman test requires at least two methods and one instance.");
+        }
+        meanRanks = new double[k];
+        column = new double[k];
+        ranks = new double[k];
+        ties = 0;
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < k; i++) {
+                if (results[i].length != n) {
+                    throw new IllegalArgumentException("All the methods must have the same number of results.");
+                }
+                column[i] = results[i][j];
+            }
+            ties += rank(column, ranks, false);
+            for (int i = 0; i < k; i++) {
+                meanRanks[i] += ranks[i];
+            }
+        }
+        sum = 0;
+        for (int i = 0; i < k; i++) {
+            meanRanks[i] /= n;
+            sum += (meanRanks[i] - (k + 1) / 2.0) * (meanRanks[i] - (k + 1) / 2.0);
+        }
+        statistic = 12.0 * n / (k * (k + 1)) * sum;
+        /*
+         * Tie correction (no correction is possible if every instance is a tie).
+         */
+        if (ties < (double) n * (k * k * k - k)) {
+            statistic /= 1 - ties / (n * ((double) k * k * k - k));
+            pValue = chiSquareSurvival(statistic, k - 1);
+        } else {
+            statistic = 0;
+            pValue = 1;
+        }
+        /*
+         * Pairwise comparisons of the mean ranks.
+         */
+        se = Math.sqrt(k * (k + 1) / (6.0 * n));
+        raw = new double[k][k];
+        pairs = new double[k][k];
+        for (int a = 0; a < k; a++) {
+            for (int b = a + 1; b < k; b++) {
+                raw[a][b] = raw[b][a] = Math.min(1, 2 * normalSurvival(Math.abs(meanRanks[a] - meanRanks[b]) / se));
+                pairs[a][b] = pairs[b][a] = raw[a][b];
+            }
+        }
+        holm(pairs);
+        return new Friedman(statistic, pValue, meanRanks, raw, pairs);
+    }
+
+    /**
+     * Returns the bootstrap confidence interval (percentile method) of the
+     * mean difference between two paired samples.
+     * <p>
+     * @param x The results of the first method.
+     * @param y The results of the second method, for the same instances.
+     * @param nbResamples The number of resamples.
+     * @param confidence The confidence level (for instance, 0.95).
+     * @param seed The seed of the resamples.
+     * @return The mean difference (<code>x - y</code>) and its confidence
+     * interval.
+     */
+    public static Interval bootstrap(double[] x, double[] y, int nbResamples, double confidence, long seed) {
+        int n, nbChunks;
+        double alpha;
+        double[] differences, means;
+        if (x.length != y.length || x.length == 0) {
+            throw new IllegalArgumentException("The samples must have the same (non zero) number of results.");
+        }
+        n = x.length;
+        differences = new double[n];
+        for (int i = 0; i < n; i++) {
+            differences[i] = x[i] - y[i];
+        }
+        means = new double[Math.max(1, nbResamples)];
+        nbChunks = (means.length + BOOTSTRAP_CHUNK - 1) / BOOTSTRAP_CHUNK;
+        IntStream.range(0, nbChunks).parallel().forEach(c -> {
+            double sum;
+            RandomStream random;
+            random = RandomStream.of(seed, c);
+            for (int r = c * BOOTSTRAP_CHUNK; r < Math.min(means.length, (c + 1) * BOOTSTRAP_CHUNK); r++) {
+                sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += differences[random.nextInt(n)];
+                }
+                means[r] = sum / n;
+            }
+        });
+        alpha = (1 - confidence) / 2;
+        return new Interval(Statistical.mean(differences), Statistical.quantile(means, alpha),
+                Statistical.quantile(means, 1 - alpha), confidence);
+    }
+
+    /**
+     * Returns a report that compares every method with a control method (for
+     * instance, a hyper-heuristic against the heuristics it uses): mean
+     * result, median result (see {@link Statistical#median(double[])}), mean
+     * rank, p-value of the comparison with the control after the Friedman
+     * test (adjusted with Holm's method over the <code>k - 1</code>
+     * comparisons with the control), p-value of the Wilcoxon test and 95%
+     * bootstrap interval of the mean difference.
+     * <p>
+     * @param names The names of the methods.
+     * @param results The results of every method (one row per method, one
+     * column per instance).
+     * @param control The position of the control method.
+     * @return The report (one line per method, after a line with the
+     * Friedman test).
+     */
+    public static String report(String[] names, double[][] results, int control) {
+        double[] posthoc;
+        Friedman friedman;
+        Interval interval;
+        StringBuilder string;
+        friedman = friedman(results);
+        posthoc = friedman.versus(control);
+        string = new StringBuilder();
+        string.append("Friedman: chi2 ").append(ResultWriter.format(friedman.statistic))
+                .append(" | p ").append(ResultWriter.format(friedman.pValue)).append("\n");
+        string.append("Method, Mean, Median, Mean rank, p (post hoc), p (Wilcoxon), Difference, Lower, Upper\n");
+        for (int i = 0; i < results.length; i++) {
+            string.append(names[i]).append(", ").append(ResultWriter.format(Statistical.mean(results[i])))
+                    .append(", ").append(ResultWriter.format(Statistical.median(results[i])))
+                    .append(", ").append(ResultWriter.format(friedman.meanRanks[i]));
+            if (i == control) {
+                string.append(", -, -, -, -, -\n");
+                continue;
+            }
+            interval = bootstrap(results[i], results[control], 10000, 0.95, i);
+            string.append(", ").append(ResultWriter.format(posthoc[i]))
+                    .append(", ").append(ResultWriter.format(wilcoxon(results[i], results[control]).pValue))
+                    .append(", ").append(ResultWriter.format(interval.estimate))
+                    .append(", ").append(ResultWriter.format(interval.lower))
+                    .append(", ").append(ResultWriter.format(interval.upper)).append("\n");
+        }
+        return string.toString().trim();
+    }
+
+    /**
+     * Ranks some values (1 for the lowest one), giving tied values their mean
+     * rank.
+     * <p>
+     * @param values The values to rank.
+     * @param ranks The array where the ranks will be stored.
+     * @param absolute Whether the absolute values are ranked or not.
+     * @return The sum of <code>t^3 - t</code> over the groups of
+     * <code>t</code> tied values.
+     */
+    private static double rank(double[] values, double[] ranks, boolean absolute) {
+        int n, j;
+        double ties, rank;
+        Integer[] positions;
+        n = values.length;
+        positions = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, (a, b) -> Double.compare(absolute ? Math.abs(values[a]) : values[a],
+                absolute ? Math.abs(values[b]) : values[b]));
+        ties = 0;
+        for (int i = 0; i < n; i = j) {
+            j = i + 1;
+            while (j < n && (absolute ? Math.abs(values[positions[j]]) == Math.abs(values[positions[i]])
+                    : values[positions[j]] == values[positions[i]])) {
+                j++;
+            }
+            rank = (i + j + 1) / 2.0;
+            for (int t = i; t < j; t++) {
+                ranks[positions[t]] = rank;
+            }
+            ties += Math.pow(j - i, 3) - (j - i);
+        }
+        return ties;
+    }
+
+    /**
+     * Returns the probability that the Wilcoxon statistic of
+     * <code>n</code> differences without ties is smaller than or equal to a
+     * given value.
+     * <p>
+     * @param n The number of differences.
+     * @param w The value of the statistic.
+     * @return The probability that the statistic is smaller than or equal to
+     * the value.
+     */
+    private static double signedRankCdf(int n, int w) {
+        int max;
+        double sum;
+        double[] counts;
+        max = n * (n + 1) / 2;
+        counts = new double[max + 1];
+        counts[0] = 1;
+        for (int r = 1; r <= n; r++) {
+            for (int s = max; s >= r; s--) {
+                counts[s] += counts[s - r];
+            }
+        }
+        sum = 0;
+        for (int s = 0; s <= w; s++) {
+            sum += counts[s];
+        }
+        return sum / Math.pow(2, n);
+    }
+
+    /**
+     * Adjusts a set of p-values with Holm's step-down method.
+     * <p>
+     * @param pValues The p-values, which are replaced by the adjusted ones.
+     */
+    static void holm(double[] pValues) {
+        int m;
+        double adjusted;
+        Integer[] order;
+        m = pValues.length;
+        order = new Integer[m];
+        for (int i = 0; i < m; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (p, q) -> Double.compare(pValues[p], pValues[q]));
+        adjusted = 0;
+        for (int i = 0; i < m; i++) {
+            adjusted = Math.min(1, Math.max(adjusted, (m - i) * pValues[order[i]]));
+            pValues[order[i]] = adjusted;
+        }
+    }
+
+    /**
+     * Adjusts the p-values of a symmetric matrix of pairwise comparisons with
+     * Holm's step-down method.
+     * <p>
+     * @param pairs The p-values (the diagonal is ignored).
+     */
+    private static void holm(double[][] pairs) {
+        int k, m;
+        double[] pValues;
+        k = pairs.length;
+        pValues = new double[k * (k - 1) / 2];
+        m = 0;
+        for (int a = 0; a < k; a++) {
+            for (int b = a + 1; b < k; b++) {
+                pValues[m++] = pairs[a][b];
+            }
+        }
+        holm(pValues);
+        m = 0;
+        for (int a = 0; a < k; a++) {
+            for (int b = a + 1; b < k; b++) {
+                pairs[a][b] = pairs[b][a] = pValues[m++];
+            }
+        }
+    }
+
+    /**
+     * Returns the probability that a standard normal variable is larger than
+     * a given value.
+     * <p>
+     * @param z The value.
+     * @return The probability that a standard normal variable is larger than
+     * the value.
+     */
+    static double normalSurvival(double z) {
+        if (z < 0) {
+            return 1 - normalSurvival(-z);
+        }
+        /*
+         * erfc(x) = Q(1/2, x^2).
+         */
+        return 0.5 * gammaQ(0.5, z * z / 2);
+    }
+
+    /**
+     * Returns the probability that a chi-squared variable is larger than a
+     * given value.
+     * <p>
+     * @param x The value.
+     * @param df The degrees of freedom.
+     * @return The probability that the variable is larger than the value.
+     */
+    static double chiSquareSurvival(double x, int df) {
+        return x <= 0 ? 1 : gammaQ(df / 2.0, x / 2);
+    }
+
+    /**
+     * Returns the regularized upper incomplete gamma function
+     * <code>Q(a, x)</code> (series expansion below <code>a + 1</code>,
+     * continued fraction above).
+     * <p>
+     * @param a The shape.
+     * @param x The value.
+     * @return The value of <code>Q(a, x)</code>.
+     */
+    private static double gammaQ(double a, double x) {
+        double sum, term, b, c, d, h, an, prefix;
+        if (x <= 0) {
+            return 1;
+        }
+        prefix = Math.exp(-x + a * Math.log(x) - logGamma(a));
+        if (x < a + 1) {
+            term = sum = 1 / a;
+            for (int n = 1; n < 1000 && Math.abs(term) > Math.abs(sum) * 1e-16; n++) {
+                term *= x / (a + n);
+                sum += term;
+            }
+            return Math.max(0, 1 - sum * prefix);
+        }
+        b = x + 1 - a;
+        c = 1 / Double.MIN_NORMAL;
+        d = 1 / b;
+        h = d;
+        for (int n = 1; n < 1000; n++) {
+            an = -n * (n - a);
+            b += 2;
+            d = an * d + b;
+            if (Math.abs(d) < Double.MIN_NORMAL) {
+                d = Double.MIN_NORMAL;
+            }
+            c = b + an / c;
+            if (Math.abs(c) < Double.MIN_NORMAL) {
+                c = Double.MIN_NORMAL;
+            }
+            d = 1 / d;
+            h *= d * c;
+            if (Math.abs(d * c - 1) < 1e-16) {
+                break;
+            }
+        }
+        return h * prefix;
+    }
+
+    /**
+     * Returns the natural logarithm of the gamma function (Lanczos
+     * approximation).
+     * <p>
+     * @param x The value (positive).
+     * @return The logarithm of the gamma function at the value.
+     */
+    private static double logGamma(double x) {
+        double sum, t;
+        double[] coefficients = {
+            0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+            -176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6,
+            1.5056327351493116e-7
+        };
+        if (x < 0.5) {
+            return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+        }
+        x -= 1;
+        sum = coefficients[0];
+        for (int i = 1; i < coefficients.length; i++) {
+            sum += coefficients[i] / (x + i);
+        }
+        t = x + coefficients.length - 1.5;
+        return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+    }
+
+    /**
+     * The result of a statistical test.
+     */
+    public static class Test {
+
+        /**
+         * The statistic of the test.
+         */
+        public final double statistic;
+        /**
+         * The p-value of the test.
+         */
+        public final double pValue;
+
+        Test(double statistic, double pValue) {
+            this.statistic = statistic;
+            this.pValue = pValue;
+        }
+    }
+
+    /**
+     * The result of the Friedman test and of the pairwise comparisons.
+     */
+    public static class Friedman extends Test {
+
+        /**
+         * The mean rank of every method.
+         */
+        public final double[] meanRanks;
+        /**
+         * The p-value of the comparison of every pair of methods, adjusted
+         * with Holm's method over all the <code>k(k - 1)/2</code> pairs (to
+         * compare every method with a control, use {@link #versus(int)}).
+         */
+        public final double[][] pairs;
+        private final double[][] raw;
+
+        Friedman(double statistic, double pValue, double[] meanRanks, double[][] raw, double[][] pairs) {
+            super(statistic, pValue);
+            this.meanRanks = meanRanks;
+            this.raw = raw;
+            this.pairs = pairs;
+        }
+
+        /**
+         * Returns the p-value of the comparison of every method with a control
+         * method, adjusted with Holm's method over the <code>k - 1</code>
+         * comparisons with the control.
+         * <p>
+         * @param control The position of the control method.
+         * @return The adjusted p-value of every method (<code>Double.NaN</code>
+         * for the control).
+         */
+        public double[] versus(int control) {
+            int m;
+            double[] pValues, adjusted;
+            pValues = new double[raw.length - 1];
+            m = 0;
+            for (int i = 0; i < raw.length; i++) {
+                if (i != control) {
+                    pValues[m++] = raw[i][control];
+                }
+            }
+            holm(pValues);
+            adjusted = new double[raw.length];
+            m = 0;
+            for (int i = 0; i < raw.length; i++) {
+                adjusted[i] = i == control ? Double.NaN : pValues[m++];
+            }
+            return adjusted;
+        }
+    }
+
+    /**
+     * An estimation with its confidence interval.
+     */
+    public static class Interval {
+
+        /**
+         * The estimated value.
+         */
+        public final double estimate;
+        /**
+         * The lower bound of the interval.
+         */
+        public final double lower;
+        /**
+         * The upper bound of the interval.
+         */
+        public final double upper;
+        /**
+         * The confidence level of the interval.
+         */
+        public final double confidence;
+
+        Interval(double estimate, double lower, double upper, double confidence) {
+            this.estimate = estimate;
+            this.lower = lower;
+            this.upper = upper;
+            this.confidence = confidence;
+        }
+    }
+
+}
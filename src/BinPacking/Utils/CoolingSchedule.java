@@ -0,0 +1,209 @@
+package BinPacking.Utils;
+
+/**
+ * Provides the methods to update the temperature of a simulated annealing
+ * training after every step.
+ * <p>
+ * Three schedules are available: linear (the temperature decreases by the same
+ * amount after every step and reaches zero after the last step), geometric
+ * (the temperature is multiplied by the same factor after every step) and
+ * adaptive (the temperature is raised or lowered after every window of steps
+ * to keep the acceptance rate close to a target). Schedules may keep state
+ * between steps; that state can be saved and restored with
+ * {@link #getState()} and {@link #setState(double[])}, so a training run
+ * resumed from a checkpoint behaves exactly like one that was never stopped.
+ * <p>
+ * @version 1.0
+ */
+public abstract class CoolingSchedule {
+
+    protected double initialTemperature;
+    protected long totalSteps;
+
+    /**
+     * Starts a training run.
+     * <p>
+     * @param initialTemperature The temperature at the beginning of the
+     * training.
+     * @param totalSteps The total number of steps of the training.
+     */
+    public void start(double initialTemperature, long totalSteps) {
+        this.initialTemperature = initialTemperature;
+        this.totalSteps = Math.max(1, totalSteps);
+    }
+
+    /**
+     * Returns the temperature after one step of the training.
+     * <p>
+     * @param temperature The temperature before the step.
+     * @param accepted Whether the move proposed in the step was accepted or
+     * not.
+     * @return The temperature after the step.
+     */
+    public abstract double next(double temperature, boolean accepted);
+
+    /**
+     * Returns the state kept by this schedule between steps.
+     * <p>
+     * @return The state kept by this schedule between steps.
+     */
+    public double[] getState() {
+        return new double[0];
+    }
+
+    /**
+     * Restores the state returned by {@link #getState()}.
+     * <p>
+     * @param state The state of the schedule.
+     */
+    public void setState(double[] state) {
+    }
+
+    /**
+     * Returns a schedule that decreases the temperature by the same amount
+     * after every step, reaching zero after the last step.
+     * <p>
+     * @return A linear schedule.
+     */
+    public static CoolingSchedule linear() {
+        return new CoolingSchedule() {
+            @Override
+            public double next(double temperature, boolean accepted) {
+                return temperature - initialTemperature / totalSteps;
+            }
+
+            @Override
+            public String toString() {
+                return "linear";
+            }
+        };
+    }
+
+    /**
+     * Returns a schedule that multiplies the temperature by the same factor
+     * after every step.
+     * <p>
+     * @param alpha The factor (between zero and one), or zero to use the
+     * factor that reaches one thousandth of the initial temperature after the
+     * last step.
+     * @return A geometric schedule.
+     */
+    public static CoolingSchedule geometric(double alpha) {
+        return new CoolingSchedule() {
+            private double factor;
+
+            @Override
+            public void start(double initialTemperature, long totalSteps) {
+                super.start(initialTemperature, totalSteps);
+                factor = alpha > 0 ? alpha : Math.pow(1e-3, 1.0 / this.totalSteps);
+            }
+
+            @Override
+            public double next(double temperature, boolean accepted) {
+                return temperature * factor;
+            }
+
+            @Override
+            public String toString() {
+                return "geometric:" + alpha;
+            }
+        };
+    }
+
+    /**
+     * Returns a schedule that, after every window of steps, lowers the
+     * temperature when more moves than the target were accepted and raises it
+     * (up to the initial temperature) when fewer were accepted.
+     * <p>
+     * @param target The target acceptance rate (between zero and one).
+     * @param window The number of steps between two updates.
+     * @param factor The factor (between zero and one) used to lower the
+     * temperature (its inverse is used to raise it).
+     * @return An adaptive schedule.
+     */
+    public static CoolingSchedule adaptive(double target, int window, double factor) {
+        return new CoolingSchedule() {
+            private long steps, accepted;
+
+            @Override
+            public void start(double initialTemperature, long totalSteps) {
+                super.start(initialTemperature, totalSteps);
+                steps = accepted = 0;
+            }
+
+            @Override
+            public double next(double temperature, boolean wasAccepted) {
+                steps++;
+                if (wasAccepted) {
+                    accepted++;
+                }
+                if (steps < window) {
+                    return temperature;
+                }
+                if ((double) accepted / steps > target) {
+                    temperature *= factor;
+                } else {
+                    temperature = Math.min(initialTemperature, temperature / factor);
+                }
+                steps = accepted = 0;
+                return temperature;
+            }
+
+            @Override
+            public double[] getState() {
+                return new double[]{steps, accepted};
+            }
+
+            @Override
+            public void setState(double[] state) {
+                steps = (long) state[0];
+                accepted = (long) state[1];
+            }
+
+            @Override
+            public String toString() {
+                return "adaptive:" + target + ":" + window + ":" + factor;
+            }
+        };
+    }
+
+    /**
+     * Returns a schedule described by a string: <code>linear</code>,
+     * <code>geometric[:alpha]</code> or
+     * <code>adaptive[:target[:window[:factor]]]</code> (by default, a target
+     * acceptance rate of 0.3, windows of 1000 steps and a factor of 0.95).
+     * <p>
+     * @param description The description of the schedule.
+     * @return The schedule described by the string.
+     */
+    public static CoolingSchedule parse(String description) {
+        String[] parts;
+        parts = description.trim().toLowerCase().split(":");
+        switch (parts[0]) {
+            case "linear":
+                return linear();
+            case "geometric":
+                return geometric(parts.length > 1 ? Double.parseDouble(parts[1]) : 0);
+            case "adaptive":
+                return adaptive(
+                        parts.length > 1 ? Double.parseDouble(parts[1]) : 0.3,
+                        parts.length > 2 ? Integer.parseInt(parts[2]) : 1000,
+                        parts.length > 3 ? Double.parseDouble(parts[3]) : 0.95
+                );
+            default:
+                throw new IllegalArgumentException("Unknown cooling schedule \'" + description + "\'.");
+        }
+    }
+
+    /**
+     * Returns the schedule described by the system property
+     * <code>binpacking.cooling</code> (see {@link #parse(String)}), linear by
+     * default.
+     * <p>
+     * @return The schedule described by the system property.
+     */
+    public static CoolingSchedule fromSystemProperties() {
+        return parse(System.getProperty("binpacking.cooling", "linear"));
+    }
+
+}
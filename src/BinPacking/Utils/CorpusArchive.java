@@ -0,0 +1,313 @@
+package BinPacking.Utils;
+
+import BinPacking.Problem.BinPackingProblem;
+import BinPacking.Problem.Item;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Provides the methods to pack a set of one dimensional class constrained bin
+ * packing problem instances in a single file and to read them back.
+ * <p>
+ * An archive starts with a header (the magic number, the version, the number
+ * of instances and the position of the index), followed by every instance (the
+ * bin capacity, the maximum number of colors, the number of items and the size
+ * and color of each item, as big-endian integers) and, at the end, the index
+ * (the position and the name of every instance). The archive is mapped into
+ * memory when it is opened and only the index is decoded, so an instance is
+ * read only when it is requested (by its position or while iterating), which
+ * avoids opening and listing one file per instance in very large sets. Since
+ * the whole file is mapped at once, an archive cannot exceed 2 GB.
+ * <p>
+ * Archives (files whose name ends with <code>.bppa</code>) can be used
+ * wherever a folder of instances is accepted (see
+ * {@link BinPackingProblemSet}).
+ * <p>
+ * @version 1.0
+ */
+public class CorpusArchive implements Iterable<BinPackingProblem> {
+
+    /**
+     * The extension of the archives.
+     */
+    public static final String EXTENSION = ".bppa";
+    /**
+     * The magic number at the beginning of the archives.
+     */
+    public static final int MAGIC = 0x42505041;
+    /**
+     * The version of the format of the archives.
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 20;
+
+    private final String fileName;
+    private final ByteBuffer data;
+    private final int[] offsets;
+    private final String[] names;
+    private final Map<String, Integer> positions;
+
+    /**
+     * Creates a new instance of <code>CorpusArchive</code> and reads its
+     * index.
+     * <p>
+     * @param fileName The name of the archive.
+     * @throws IllegalArgumentException If the archive cannot be read or its
+     * header or index is not valid.
+     */
+    public CorpusArchive(String fileName) {
+        int nbInstances;
+        long indexOffset;
+        byte[] bytes;
+        ByteBuffer index;
+        this.fileName = fileName;
+        try {
+            data = Files.open(fileName);
+        } catch (UncheckedIOException e) {
+            throw new IllegalArgumentException("The archive \'" + fileName + "\' cannot be read.", e.getCause());
+        }
+        if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC || data.getInt() != VERSION) {
+            throw new IllegalArgumentException("The file \'" + fileName + "\' is not a valid archive.");
+        }
+        nbInstances = data.getInt();
+        indexOffset = data.getLong();
+        /*
+         * Every entry of the index takes at least six bytes (the position and the length of the name).
+         */
+        if (nbInstances < 0 || indexOffset < HEADER_SIZE || indexOffset > data.limit()
+                || nbInstances > (data.limit() - indexOffset) / 6) {
+            throw new IllegalArgumentException("The index of the archive \'" + fileName + "\' is not valid.");
+        }
+        offsets = new int[nbInstances];
+        names = new String[nbInstances];
+        positions = new HashMap();
+        index = data.duplicate();
+        index.position((int) indexOffset);
+        try {
+            for (int i = 0; i < nbInstances; i++) {
+                offsets[i] = index.getInt();
+                if (offsets[i] < HEADER_SIZE || offsets[i] > indexOffset - 12) {
+                    throw new IllegalArgumentException("The index of the archive \'" + fileName + "\' is not valid.");
+                }
+                bytes = new byte[index.getShort() & 0xFFFF];
+                index.get(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+                positions.put(names[i], i);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("The index of the archive \'" + fileName + "\' is truncated.");
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a path refers to an archive, or
+     * <code>false</code> otherwise.
+     * <p>
+     * @param path The path.
+     * @return <code>true</code> if the path is an existing file with the
+     * extension of the archives.
+     */
+    public static boolean isArchive(String path) {
+        return path.endsWith(EXTENSION) && new File(path).isFile();
+    }
+
+    /**
+     * Packs all the instances in a folder into an archive. The instances are
+     * loaded and written one at a time, in the order of their names.
+     * <p>
+     * @param folder The folder where the instances are stored.
+     * @param fileName The name of the archive.
+     */
+    public static void pack(String folder, String fileName) {
+        long offset;
+        List<String> fileNames;
+        int[] offsets;
+        BinPackingProblem problem;
+        DataOutputStream out;
+        File file;
+        file = new File(folder);
+        if (!file.isDirectory()) {
+            System.out.println("The path \'" + folder + "\'is not a valid directory.");
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+        fileNames = Arrays.asList(file.list());
+        Collections.sort(fileNames);
+        offsets = new int[fileNames.size()];
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName, false), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(fileNames.size());
+            out.writeLong(0);
+            offset = HEADER_SIZE;
+            for (int i = 0; i < offsets.length; i++) {
+                problem = new BinPackingProblem(folder + "/" + fileNames.get(i));
+                offsets[i] = (int) offset;
+                out.writeInt(problem.getMaxCapacity());
+                out.writeInt(problem.getMaxColors());
+                out.writeInt(problem.getNbItems());
+                for (Item item : problem.getItems()) {
+                    out.writeInt(item.getSize());
+                    out.writeInt(item.getColor());
+                }
+                offset += 12 + 8L * problem.getNbItems();
+                if (offset > Integer.MAX_VALUE) {
+                    throw new IOException("The archive cannot exceed 2 GB.");
+                }
+            }
+            /*
+             * Writes the index and then the position of the index in the header.
+             */
+            for (int i = 0; i < offsets.length; i++) {
+                out.writeInt(offsets[i]);
+                out.writeUTF(fileNames.get(i));
+            }
+            out.close();
+            try (RandomAccessFile archive = new RandomAccessFile(fileName, "rw")) {
+                archive.seek(12);
+                archive.writeLong(offset);
+            }
+        } catch (IOException e) {
+            System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
+            System.out.println("Exception: " + e.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the number of instances in this archive.
+     * <p>
+     * @return The number of instances in this archive.
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the name of an instance.
+     * <p>
+     * @param id The position of the instance in this archive.
+     * @return The name of the instance.
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the position of an instance in this archive.
+     * <p>
+     * @param name The name of the instance.
+     * @return The position of the instance, or -1 if this archive does not
+     * contain it.
+     */
+    public int indexOf(String name) {
+        Integer position;
+        position = positions.get(name);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Reads an instance from this archive.
+     * <p>
+     * @param id The position of the instance in this archive.
+     * @return The instance.
+     * @throws IllegalArgumentException If the instance is truncated.
+     */
+    public BinPackingProblem get(int id) {
+        int maxCapacity, maxColors, nbItems;
+        Item[] items;
+        ByteBuffer buffer;
+        if (id < 0 || id >= offsets.length) {
+            throw new IndexOutOfBoundsException("The archive \'" + fileName + "\' has " + offsets.length + " instances.");
+        }
+        buffer = data.duplicate();
+        buffer.position(offsets[id]);
+        maxCapacity = buffer.getInt();
+        maxColors = buffer.getInt();
+        nbItems = buffer.getInt();
+        if (nbItems < 0 || nbItems > buffer.remaining() / 8) {
+            throw new IllegalArgumentException("The instance \'" + names[id] + "\' of the archive \'" + fileName + "\' is truncated.");
+        }
+        items = new Item[nbItems];
+        for (int i = 0; i < nbItems; i++) {
+            items[i] = new Item(buffer.getInt(), buffer.getInt());
+        }
+        return new BinPackingProblem(names[id], maxCapacity, maxColors, items);
+    }
+
+    /**
+     * Reads all the instances in this archive.
+     * <p>
+     * @return All the instances in this archive.
+     */
+    public BinPackingProblem[] getInstances() {
+        BinPackingProblem[] instances;
+        instances = new BinPackingProblem[offsets.length];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = get(i);
+        }
+        return instances;
+    }
+
+    /**
+     * Returns an iterator over the instances in this archive, which reads
+     * every instance only when it is reached.
+     * <p>
+     * @return An iterator over the instances in this archive.
+     */
+    @Override
+    public Iterator<BinPackingProblem> iterator() {
+        return new Iterator<BinPackingProblem>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < offsets.length;
+            }
+
+            @Override
+            public BinPackingProblem next() {
+                if (next >= offsets.length) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Packs a folder of instances into an archive from the command line.
+     * <p>
+     * The arguments are: the folder where the instances are stored and the
+     * name of the archive.
+     * <p>
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: CorpusArchive folder archive" + EXTENSION);
+            System.exit(1);
+        }
+        pack(args[0], args[1]);
+    }
+
+}
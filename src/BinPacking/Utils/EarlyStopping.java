@@ -0,0 +1,108 @@
+package BinPacking.Utils;
+
+/**
+ * Provides the methods to decide when a training run has stopped improving.
+ * <p>
+ * After every epoch, the criterion receives the mean training cost of the
+ * epoch (the AVGW obtained with the heuristics selected by the
+ * hyper-heuristic) and how much the conditions moved during the epoch. The
+ * training should stop when the best cost has not improved by at least the
+ * minimum improvement during the last <code>patience</code> epochs, or as soon
+ * as the conditions move less than the minimum movement in one epoch.
+ * <p>
+ * @version 1.0
+ */
+public class EarlyStopping {
+
+    private final int patience;
+    private final double minImprovement;
+    private final double minMovement;
+    private double best;
+    private int sinceBest;
+
+    /**
+     * Creates a new instance of <code>EarlyStopping</code>.
+     * <p>
+     * @param patience The number of epochs without improvement tolerated.
+     * @param minImprovement The minimum decrease of the cost considered an
+     * improvement.
+     * @param minMovement The minimum movement of the conditions in one epoch
+     * (zero to ignore the movement).
+     */
+    public EarlyStopping(int patience, double minImprovement, double minMovement) {
+        this.patience = Math.max(1, patience);
+        this.minImprovement = minImprovement;
+        this.minMovement = minMovement;
+        reset();
+    }
+
+    /**
+     * Returns the criterion described by the system property
+     * <code>binpacking.earlyStopping</code>, with the format
+     * <code>patience[:minImprovement[:minMovement]]</code>, or
+     * <code>null</code> when the property is not defined.
+     * <p>
+     * @return The criterion described by the system property, or
+     * <code>null</code>.
+     */
+    public static EarlyStopping fromSystemProperties() {
+        String description;
+        String[] parts;
+        description = System.getProperty("binpacking.earlyStopping");
+        if (description == null) {
+            return null;
+        }
+        parts = description.trim().split(":");
+        return new EarlyStopping(
+                Integer.parseInt(parts[0]),
+                parts.length > 1 ? Double.parseDouble(parts[1]) : 1e-4,
+                parts.length > 2 ? Double.parseDouble(parts[2]) : 0
+        );
+    }
+
+    /**
+     * Starts a training run.
+     */
+    public void reset() {
+        best = Double.MAX_VALUE;
+        sinceBest = 0;
+    }
+
+    /**
+     * Records the results of one epoch.
+     * <p>
+     * @param cost The mean training cost of the epoch.
+     * @param movement The total distance moved by the conditions during the
+     * epoch.
+     * @return Whether the training should stop or not.
+     */
+    public boolean update(double cost, double movement) {
+        if (cost < best - minImprovement) {
+            best = cost;
+            sinceBest = 0;
+        } else {
+            sinceBest++;
+        }
+        return sinceBest >= patience || movement < minMovement;
+    }
+
+    /**
+     * Returns the state kept by this criterion between epochs.
+     * <p>
+     * @return The state kept by this criterion between epochs.
+     */
+    public double[] getState() {
+        return new double[]{best, sinceBest};
+    }
+
+    /**
+     * Restores the state returned by {@link #getState()}.
+     * <p>
+     * @param state The state of the criterion.
+     */
+    public void setState(double[] state) {
+        best = state[0];
+        sinceBest = (int) state[1];
+    }
+
+}
@@ -1,9 +1,14 @@
 package BinPacking.Utils;
 
+import BinPacking.Events.FileWriteEvent;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Provides the methods to save and load text files.
@@ -20,6 +25,28 @@ public abstract class Files {
      * @return A string with the contents of the text file.
      */
     public static String load(String fileName) {
+        try {
+            return read(fileName);
+        } catch (UncheckedIOException e) {
+            System.out.println("An error occurred while attempting to read the file \'" + fileName + "\'.");
+            System.out.println("Exception: " + e.getCause().toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+        return null;
+    }
+
+    /**
+     * Reads a text file and returns a string with its contents. Unlike
+     * {@link #load(String)}, which halts the system, this method throws an
+     * exception when the file cannot be read, so it can be used by services
+     * that must keep running.
+     * <p>
+     * @param fileName The name of the text file to be read.
+     * @return A string with the contents of the text file.
+     * @throws UncheckedIOException If the file cannot be read.
+     */
+    public static String read(String fileName) {
         File file = new File(fileName);
         char[] data;
         int size = (int) file.length(), chars_read = 0;
@@ -33,12 +60,8 @@ public abstract class Files {
             in.close();
             return (new String(data, 0, chars_read));
         } catch (IOException e) {
-            System.out.println("An error occurred while attempting to read the file \'" + fileName + "\'.");
-            System.out.println("Exception: " + e.toString());
-            System.out.println("The system will halt.");
-            System.exit(1);
+            throw new UncheckedIOException(e);
         }
-        return null;
     }
 
     /**
@@ -50,11 +73,19 @@ public abstract class Files {
     public static void save(String string, String fileName) {
         File f;
         FileWriter fw;
+        FileWriteEvent event;
+        event = new FileWriteEvent();
+        event.begin();
         try {
             f = new File(fileName);
             fw = new FileWriter(f, false);
             fw.write(string);
             fw.close();
+            if (event.shouldCommit()) {
+                event.fileName = fileName;
+                event.size = f.length();
+                event.commit();
+            }
         } catch (IOException e) {
             System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
             System.out.println("Exception: " + e.toString());
@@ -63,4 +94,46 @@ public abstract class Files {
         }
     }
 
+    /**
+     * Maps a binary file into memory and returns a buffer with its contents.
+     * <p>
+     * @param fileName The name of the binary file to be read.
+     * @return A read-only buffer with the contents of the binary file.
+     */
+    public static ByteBuffer map(String fileName) {
+        try {
+            return open(fileName);
+        } catch (UncheckedIOException e) {
+            System.out.println("An error occurred while attempting to read the file \'" + fileName + "\'.");
+            System.out.println("Exception: " + e.getCause().toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+        return null;
+    }
+
+    /**
+     * Maps a binary file into memory and returns a buffer with its contents.
+     * Unlike {@link #map(String)}, which halts the system, this method throws
+     * an exception when the file cannot be read.
+     * <p>
+     * @param fileName The name of the binary file to be read.
+     * @return A read-only buffer with the contents of the binary file.
+     * @throws UncheckedIOException If the file cannot be read.
+     */
+    public static ByteBuffer open(String fileName) {
+        RandomAccessFile file;
+        FileChannel channel;
+        ByteBuffer buffer;
+        try {
+            file = new RandomAccessFile(fileName, "r");
+            channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            file.close();
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
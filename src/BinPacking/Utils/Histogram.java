@@ -0,0 +1,177 @@
+package BinPacking.Utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides a thread-safe histogram of non-negative values with logarithmic
+ * buckets (in the style of HDR histograms).
+ * <p>
+ * Values below 32 are counted exactly; larger values are grouped in 16
+ * buckets per power of two, so any reported percentile is within about 6% of
+ * the real value. Recording a value is a few bit operations and one atomic
+ * increment, and never allocates.
+ * <p>
+ * @version 1.0
+ */
+public class Histogram {
+
+    private static final int MANTISSA_BITS = 4;
+    private static final int EXACT = 1 << (MANTISSA_BITS + 1);
+    private static final int NB_BUCKETS = EXACT + (62 - MANTISSA_BITS) * (1 << MANTISSA_BITS);
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count, sum;
+    private final AtomicLong max;
+
+    /**
+     * Creates a new instance of <code>Histogram</code>.
+     */
+    public Histogram() {
+        buckets = new AtomicLongArray(NB_BUCKETS);
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records a value in this histogram. Negative values are recorded as zero.
+     * <p>
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        long current;
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(getBucket(value));
+        count.increment();
+        sum.add(value);
+        current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of values recorded in this histogram.
+     * <p>
+     * @return The number of values recorded in this histogram.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean of the values recorded in this histogram.
+     * <p>
+     * @return The mean of the values recorded in this histogram.
+     */
+    public double getMean() {
+        long n;
+        n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        return (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the maximum value recorded in this histogram.
+     * <p>
+     * @return The maximum value recorded in this histogram.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns an estimation of the value at a given percentile.
+     * <p>
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the bucket that contains the percentile.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n, target, seen;
+        n = 0;
+        for (int i = 0; i < NB_BUCKETS; i++) {
+            n += buckets.get(i);
+        }
+        if (n == 0) {
+            return 0;
+        }
+        target = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        seen = 0;
+        for (int i = 0; i < NB_BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Removes all the values recorded in this histogram.
+     */
+    public void reset() {
+        for (int i = 0; i < NB_BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Returns the bucket where a value is counted.
+     * <p>
+     * @param value The value.
+     * @return The bucket where the value is counted.
+     */
+    private static int getBucket(long value) {
+        int msb, mantissa;
+        if (value < EXACT) {
+            return (int) value;
+        }
+        msb = 63 - Long.numberOfLeadingZeros(value);
+        mantissa = (int) (value >>> (msb - MANTISSA_BITS)) & ((1 << MANTISSA_BITS) - 1);
+        return EXACT + (msb - MANTISSA_BITS - 1) * (1 << MANTISSA_BITS) + mantissa;
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     * <p>
+     * @param bucket The bucket.
+     * @return The largest value counted in the bucket.
+     */
+    private static long getUpperBound(int bucket) {
+        int msb, mantissa;
+        if (bucket < EXACT) {
+            return bucket;
+        }
+        msb = (bucket - EXACT) / (1 << MANTISSA_BITS) + MANTISSA_BITS + 1;
+        mantissa = (bucket - EXACT) % (1 << MANTISSA_BITS);
+        return (((long) (1 << MANTISSA_BITS) + mantissa + 1) << (msb - MANTISSA_BITS)) - 1;
+    }
+
+    /**
+     * Returns the string representation of this histogram.
+     * <p>
+     * @return The string representation of this histogram.
+     */
+    @Override
+    public String toString() {
+        StringBuilder string;
+        string = new StringBuilder();
+        string.append("count=").append(getCount());
+        string.append(" mean=").append(String.format("%.1f", getMean()));
+        string.append(" p50=").append(getValueAtPercentile(50));
+        string.append(" p90=").append(getValueAtPercentile(90));
+        string.append(" p99=").append(getValueAtPercentile(99));
+        string.append(" max=").append(getMax());
+        return string.toString();
+    }
+
+}
@@ -0,0 +1,360 @@
+package BinPacking.Utils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Provides the methods to generate large synthetic instances of the one
+ * dimensional class constrained bin packing problem.
+ * <p>
+ * The items are generated in chunks by a pool of threads. Every chunk uses its
+ * own random number generator, derived from the seed and the position of the
+ * chunk, so the same seed always produces the same instance regardless of the
+ * number of threads. The chunks are written to disk in order as soon as they
+ * are ready, so the whole instance is never held in memory.
+ * <p>
+ * Files whose name ends with <code>.bppb</code> are written in a binary format
+ * (a header with the magic number, the version, the number of items, the bin
+ * capacity and the maximum number of colors, followed by the size and color of
+ * each item as big-endian integers). Any other name produces a regular
+ * <code>.bpp</code> text file.
+ * <p>
+ * @version 1.0
+ */
+public class InstanceGenerator {
+
+    /**
+     * The maximum number of items supported by the generator.
+     */
+    public static final int MAX_ITEMS = 10000000;
+    /**
+     * The extension of the files written in the binary format.
+     */
+    public static final String BINARY_EXTENSION = ".bppb";
+    /**
+     * The magic number at the beginning of the files in the binary format.
+     */
+    public static final int BINARY_MAGIC = 0x42505042;
+    /**
+     * The version of the binary format.
+     */
+    public static final int BINARY_VERSION = 1;
+
+    /*
+     * A multiple of three, so triplets never cross the boundary of a chunk.
+     */
+    private static final int CHUNK_SIZE = 30000;
+
+    private final int nbItems, capacity, nbColors, maxColors;
+    private final SizeDistribution distribution;
+    private final long seed;
+
+    /**
+     * Creates a new instance of <code>InstanceGenerator</code>.
+     * <p>
+     * @param nbItems The number of items in the instances to generate.
+     * @param capacity The capacity of the bins.
+     * @param nbColors The number of different colors of the items.
+     * @param maxColors The maximum number of different colors allowed to be
+     * packed in one bin.
+     * @param distribution The distribution of the sizes of the items.
+     * @param seed The seed to initialize the random number generators.
+     */
+    public InstanceGenerator(int nbItems, int capacity, int nbColors, int maxColors, SizeDistribution distribution, long seed) {
+        if (nbItems < 1 || nbItems > MAX_ITEMS) {
+            throw new IllegalArgumentException("The number of items must be between 1 and " + MAX_ITEMS + ".");
+        }
+        if (capacity < 3) {
+            throw new IllegalArgumentException("The capacity of the bins must be at least 3.");
+        }
+        if (nbColors < 1 || maxColors < 1) {
+            throw new IllegalArgumentException("The number of colors must be positive.");
+        }
+        this.nbItems = nbItems;
+        this.capacity = capacity;
+        this.nbColors = nbColors;
+        this.maxColors = maxColors;
+        this.distribution = distribution;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates an instance and saves it to the file provided as argument by
+     * using as many threads as available processors.
+     * <p>
+     * @param fileName The file where the instance will be saved.
+     */
+    public void save(String fileName) {
+        save(fileName, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Generates an instance and saves it to the file provided as argument.
+     * <p>
+     * @param fileName The file where the instance will be saved.
+     * @param nbThreads The number of threads used to generate the items.
+     */
+    public void save(String fileName, int nbThreads) {
+        int nbChunks, next;
+        byte[] data;
+        boolean binary;
+        OutputStream out;
+        ExecutorService pool;
+        LinkedList<Future<byte[]>> pending;
+        binary = fileName.endsWith(BINARY_EXTENSION);
+        nbChunks = (nbItems + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        pool = Executors.newFixedThreadPool(Math.max(1, nbThreads));
+        pending = new LinkedList();
+        out = null;
+        try {
+            out = new FileOutputStream(fileName, false);
+            out.write(getHeader(binary));
+            /*
+             * Keeps a bounded window of chunks in flight and writes them in order.
+             */
+            next = 0;
+            while (next < nbChunks && pending.size() < 2 * Math.max(1, nbThreads)) {
+                pending.add(pool.submit(new Chunk(next++, binary)));
+            }
+            while (!pending.isEmpty()) {
+                data = pending.removeFirst().get();
+                out.write(data);
+                if (next < nbChunks) {
+                    pending.add(pool.submit(new Chunk(next++, binary)));
+                }
+            }
+            out.close();
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
+            System.out.println("Exception: " + e.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the header of the file for the instance being generated.
+     * <p>
+     * @param binary Whether the header is for the binary format or not.
+     * @return The header of the file for the instance being generated.
+     */
+    private byte[] getHeader(boolean binary) {
+        ByteBuffer buffer;
+        if (binary) {
+            buffer = ByteBuffer.allocate(20);
+            buffer.putInt(BINARY_MAGIC).putInt(BINARY_VERSION);
+            buffer.putInt(nbItems).putInt(capacity).putInt(maxColors);
+            return buffer.array();
+        }
+        return (nbItems + "\n" + capacity + "\n" + maxColors + "\n").getBytes();
+    }
+
+    /**
+     * Returns a well distributed seed for the chunk provided as argument.
+     * <p>
+     * @param chunk The position of the chunk.
+     * @return A well distributed seed for the chunk provided as argument.
+     */
+    private long getSeed(int chunk) {
+        long z;
+        /*
+         * SplitMix64 finalizer.
+         */
+        z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Generates the sizes of one chunk of items.
+     * <p>
+     * @param random The random number generator of the chunk.
+     * @param sizes The array where the sizes will be stored.
+     */
+    private void generateSizes(Random random, int[] sizes) {
+        int i, first, second;
+        double mean;
+        switch (distribution) {
+            case UNIFORM:
+                for (i = 0; i < sizes.length; i++) {
+                    sizes[i] = 1 + random.nextInt(capacity);
+                }
+                break;
+            case TRIPLET:
+                for (i = 0; i + 2 < sizes.length; i += 3) {
+                    first = between(random, (int) (0.38 * capacity), (int) (0.49 * capacity));
+                    second = between(random, (int) (0.25 * capacity), (capacity - first) / 2);
+                    sizes[i] = first;
+                    sizes[i + 1] = second;
+                    sizes[i + 2] = capacity - first - second;
+                }
+                /*
+                 * The last chunk may not be a multiple of three; the remaining
+                 * items still fill exactly one bin.
+                 */
+                if (sizes.length - i == 1) {
+                    sizes[i] = capacity;
+                } else if (sizes.length - i == 2) {
+                    sizes[i] = between(random, 1, capacity - 1);
+                    sizes[i + 1] = capacity - sizes[i];
+                }
+                shuffle(random, sizes);
+                break;
+            case BIMODAL:
+                for (i = 0; i < sizes.length; i++) {
+                    mean = random.nextBoolean() ? 0.20 : 0.70;
+                    sizes[i] = (int) Math.round((mean + 0.05 * random.nextGaussian()) * capacity);
+                    sizes[i] = Math.max(1, Math.min(capacity, sizes[i]));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Returns a random integer in the closed interval provided as argument.
+     * <p>
+     * @param random The random number generator to use.
+     * @param min The lower bound of the interval.
+     * @param max The upper bound of the interval.
+     * @return A random integer in the closed interval provided as argument.
+     */
+    private static int between(Random random, int min, int max) {
+        min = Math.max(1, min);
+        if (max <= min) {
+            return min;
+        }
+        return min + random.nextInt(max - min + 1);
+    }
+
+    /**
+     * Shuffles the values provided as argument (Fisher-Yates).
+     * <p>
+     * @param random The random number generator to use.
+     * @param values The values to shuffle.
+     */
+    private static void shuffle(Random random, int[] values) {
+        int j, tmp;
+        for (int i = values.length - 1; i > 0; i--) {
+            j = random.nextInt(i + 1);
+            tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    /**
+     * Writes the decimal representation of a non-negative integer.
+     * <p>
+     * @param value The value to write.
+     * @param data The array where the digits will be written.
+     * @param offset The position of the first digit in the array.
+     * @return The position after the last digit written.
+     */
+    private static int writeDigits(int value, byte[] data, int offset) {
+        int end, length, tmp;
+        length = 1;
+        for (tmp = value; tmp >= 10; tmp /= 10) {
+            length++;
+        }
+        end = offset + length;
+        for (int i = end - 1; i >= offset; i--) {
+            data[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Generates one chunk of items and returns it already encoded.
+     */
+    private class Chunk implements Callable<byte[]> {
+
+        private final int index;
+        private final boolean binary;
+
+        Chunk(int index, boolean binary) {
+            this.index = index;
+            this.binary = binary;
+        }
+
+        @Override
+        public byte[] call() {
+            int length, offset, color;
+            int[] sizes;
+            byte[] data;
+            Random random;
+            ByteBuffer buffer;
+            length = Math.min(CHUNK_SIZE, nbItems - index * CHUNK_SIZE);
+            random = new Random(getSeed(index));
+            sizes = new int[length];
+            generateSizes(random, sizes);
+            if (binary) {
+                buffer = ByteBuffer.allocate(8 * length);
+                for (int i = 0; i < length; i++) {
+                    buffer.putInt(sizes[i]).putInt(random.nextInt(nbColors));
+                }
+                return buffer.array();
+            }
+            data = new byte[length * (Integer.toString(capacity).length() + Integer.toString(nbColors).length() + 2)];
+            offset = 0;
+            for (int i = 0; i < length; i++) {
+                color = random.nextInt(nbColors);
+                offset = writeDigits(sizes[i], data, offset);
+                data[offset++] = ' ';
+                offset = writeDigits(color, data, offset);
+                data[offset++] = '\n';
+            }
+            if (offset == data.length) {
+                return data;
+            }
+            byte[] tmp = new byte[offset];
+            System.arraycopy(data, 0, tmp, 0, offset);
+            return tmp;
+        }
+    }
+
+    /**
+     * Generates an instance from the command line.
+     * <p>
+     * The arguments are: the name of the file, the number of items, the
+     * capacity of the bins, the number of colors, the maximum number of colors
+     * per bin, the size distribution (<code>UNIFORM</code>,
+     * <code>TRIPLET</code> or <code>BIMODAL</code>), the seed and, optionally,
+     * the number of threads.
+     * <p>
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        InstanceGenerator generator;
+        if (args.length < 7) {
+            System.out.println("Usage: InstanceGenerator file items capacity colors maxColors UNIFORM|TRIPLET|BIMODAL seed [threads]");
+            System.exit(1);
+        }
+        generator = new InstanceGenerator(
+                Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]),
+                Integer.parseInt(args[4]),
+                SizeDistribution.valueOf(args[5].toUpperCase()),
+                Long.parseLong(args[6])
+        );
+        if (args.length > 7) {
+            generator.save(args[0], Integer.parseInt(args[7]));
+        } else {
+            generator.save(args[0]);
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package BinPacking.Utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides a global, thread-safe registry of counters and histograms used to
+ * instrument the solvers.
+ * <p>
+ * The metrics are disabled by default and can be enabled with the system
+ * property <code>binpacking.metrics</code> or with
+ * {@link #setEnabled(boolean)}. Instrumented code is expected to look the
+ * metrics up once (for instance, in a static field) and to check
+ * {@link #isEnabled()} before measuring anything, so a disabled registry costs
+ * a single field read per call site.
+ * <p>
+ * @version 1.0
+ */
+public abstract class Metrics {
+
+    private static volatile boolean enabled = Boolean.getBoolean("binpacking.metrics");
+    private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap();
+    private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap();
+
+    /**
+     * Returns whether the metrics are being recorded or not.
+     * <p>
+     * @return <code>true</code> if the metrics are being recorded,
+     * <code>false</code> otherwise.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the recording of metrics.
+     * <p>
+     * @param value Whether the metrics must be recorded or not.
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Returns the counter with the name provided as argument, creating it if
+     * it does not exist.
+     * <p>
+     * @param name The name of the counter.
+     * @return The counter with the name provided as argument.
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Returns the histogram with the name provided as argument, creating it if
+     * it does not exist.
+     * <p>
+     * @param name The name of the histogram.
+     * @return The histogram with the name provided as argument.
+     */
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Sets all the counters and histograms back to zero. The metrics remain
+     * registered, so references kept by instrumented code stay valid.
+     */
+    public static void reset() {
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Returns a text snapshot of all the metrics, one metric per line and
+     * sorted by name. Times are reported in nanoseconds.
+     * <p>
+     * @return A text snapshot of all the metrics.
+     */
+    public static String snapshot() {
+        StringBuilder string;
+        string = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            string.append("counter ").append(entry.getKey()).append(" ").append(entry.getValue().sum()).append("\n");
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            string.append("histogram ").append(entry.getKey()).append(" ").append(entry.getValue()).append("\n");
+        }
+        return string.toString().trim();
+    }
+
+    /**
+     * Saves a text snapshot of all the metrics to a file.
+     * <p>
+     * @param fileName The file where the snapshot will be saved.
+     */
+    public static void save(String fileName) {
+        Files.save(snapshot(), fileName);
+    }
+
+}
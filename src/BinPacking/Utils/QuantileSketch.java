@@ -0,0 +1,267 @@
+package BinPacking.Utils;
+
+import java.util.Arrays;
+
+/**
+ * Provides an approximation of the quantiles of a stream of values in bounded
+ * memory (a KLL sketch).
+ * <p>
+ * The values are kept in a hierarchy of compactors: level <code>h</code> holds
+ * values that stand for <code>2^h</code> values of the stream each. When a
+ * level grows past its capacity it is sorted and every other value (starting
+ * at a random offset) is promoted to the next level, so the sketch keeps
+ * <code>O(k)</code> values and the rank of any value is estimated within about
+ * <code>1.7 / k</code> of the number of values (with high probability). The
+ * random offsets are drawn from a fixed seed, so the results are
+ * reproducible. Sketches can be merged, so every thread can summarize its own
+ * part of a stream. This class is not thread safe.
+ * <p>
+ * @version 1.0
+ */
+public class QuantileSketch {
+
+    /**
+     * The accuracy parameter used by default.
+     */
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    private final int k;
+    private final RandomStream random;
+    private double[][] levels;
+    private int[] sizes;
+    private int nbLevels, retained, totalCapacity;
+    private long count;
+    private double min, max;
+
+    /**
+     * Creates a new instance of <code>QuantileSketch</code> with the default
+     * accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates a new instance of <code>QuantileSketch</code>.
+     * <p>
+     * @param k The accuracy parameter (the capacity of the top level; larger
+     * values are more accurate and use more memory).
+     */
+    public QuantileSketch(int k) {
+        this.k = Math.max(8, k);
+        random = RandomStream.of(this.k);
+        levels = new double[4][];
+        sizes = new int[4];
+        levels[0] = new double[this.k];
+        nbLevels = 1;
+        retained = 0;
+        totalCapacity = capacity(0, 1);
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Adds a value.
+     * <p>
+     * @param value The value to add.
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        put(0, value);
+        compress();
+    }
+
+    /**
+     * Adds the values summarized by another sketch.
+     * <p>
+     * @param other The sketch to add.
+     */
+    public void merge(QuantileSketch other) {
+        /*
+         * Every level of the other sketch must exist here, even the ones that are empty in between.
+         */
+        while (nbLevels < other.nbLevels) {
+            grow();
+        }
+        for (int h = 0; h < other.nbLevels; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                put(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+    }
+
+    /**
+     * Returns the number of values added.
+     * <p>
+     * @return The number of values added.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of values kept by the sketch.
+     * <p>
+     * @return The number of values kept by the sketch.
+     */
+    public int getRetained() {
+        return retained;
+    }
+
+    /**
+     * Returns the estimated fraction of the values that are smaller than or
+     * equal to a given value.
+     * <p>
+     * @param value The value.
+     * @return The estimated fraction of the values smaller than or equal to
+     * the value.
+     */
+    public double getRank(double value) {
+        long weight;
+        if (count == 0) {
+            return Double.NaN;
+        }
+        weight = 0;
+        for (int h = 0; h < nbLevels; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if (levels[h][i] <= value) {
+                    weight += 1L << h;
+                }
+            }
+        }
+        return (double) weight / count;
+    }
+
+    /**
+     * Returns an estimation of the value at a given quantile.
+     * <p>
+     * @param quantile The quantile, between 0 and 1.
+     * @return The estimated value at the quantile (<code>Double.NaN</code> if
+     * there are no values).
+     */
+    public double getQuantile(double quantile) {
+        int next;
+        long weight, target, total;
+        int[] positions;
+        double[][] sorted;
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (quantile <= 0) {
+            return min;
+        }
+        if (quantile >= 1) {
+            return max;
+        }
+        sorted = new double[nbLevels][];
+        total = 0;
+        for (int h = 0; h < nbLevels; h++) {
+            sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(sorted[h]);
+            total += (long) sizes[h] << h;
+        }
+        /*
+         * The sorted levels are merged until the weight reaches the quantile.
+         */
+        target = (long) Math.ceil(quantile * total);
+        positions = new int[nbLevels];
+        weight = 0;
+        while (true) {
+            next = -1;
+            for (int h = 0; h < nbLevels; h++) {
+                if (positions[h] < sorted[h].length && (next < 0 || sorted[h][positions[h]] < sorted[next][positions[next]])) {
+                    next = h;
+                }
+            }
+            if (next < 0) {
+                return max;
+            }
+            weight += 1L << next;
+            if (weight >= target) {
+                return sorted[next][positions[next]];
+            }
+            positions[next]++;
+        }
+    }
+
+    /**
+     * Returns an estimation of the median.
+     * <p>
+     * @return The estimated median.
+     */
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+
+    private void put(int h, double value) {
+        if (h >= nbLevels) {
+            grow();
+        }
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        }
+        levels[h][sizes[h]++] = value;
+        retained++;
+    }
+
+    private void grow() {
+        if (nbLevels == levels.length) {
+            levels = Arrays.copyOf(levels, nbLevels * 2);
+            sizes = Arrays.copyOf(sizes, nbLevels * 2);
+        }
+        levels[nbLevels] = new double[capacity(nbLevels, nbLevels + 1) + 1];
+        nbLevels++;
+        totalCapacity = 0;
+        for (int h = 0; h < nbLevels; h++) {
+            totalCapacity += capacity(h, nbLevels);
+        }
+    }
+
+    /**
+     * Compacts levels until the sketch fits in its total capacity. Levels are
+     * only compacted when the whole sketch is full (the lowest level over its
+     * own capacity first), so the lower levels keep as many values as
+     * possible.
+     */
+    private void compress() {
+        int h, offset, size, even;
+        double[] level;
+        while (retained >= totalCapacity) {
+            h = 0;
+            while (h < nbLevels - 1 && sizes[h] < capacity(h, nbLevels)) {
+                h++;
+            }
+            level = levels[h];
+            size = sizes[h];
+            Arrays.sort(level, 0, size);
+            offset = (int) (random.nextLong() & 1);
+            even = size & ~1;
+            for (int i = offset; i < even; i += 2) {
+                put(h + 1, level[i]);
+            }
+            /*
+             * With an odd number of values, the largest one stays at this level.
+             */
+            level[0] = level[size - 1];
+            sizes[h] = size - even;
+            retained -= even;
+        }
+    }
+
+    private int capacity(int h, int height) {
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, height - 1 - h)));
+    }
+
+}
@@ -0,0 +1,163 @@
+package BinPacking.Utils;
+
+/**
+ * Provides a small, splittable random number generator (SplitMix64).
+ * <p>
+ * Unlike <code>java.util.Random</code>, the generator is not synchronized,
+ * its whole state is two numbers that can be saved and restored (for
+ * instance, in a training checkpoint) and it can be split into independent
+ * streams. Every training chain, thread or batch worker should use its own
+ * stream, obtained either with {@link #split()} or with
+ * {@link #of(long, long)}, so parallel runs are reproducible for a given seed
+ * regardless of how the work is scheduled.
+ * <p>
+ * @version 1.0
+ */
+public class RandomStream {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+    private final long gamma;
+
+    private RandomStream(long state, long gamma) {
+        this.state = state;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Returns a new stream for the seed provided as argument.
+     * <p>
+     * @param seed The seed of the stream.
+     * @return A new stream for the seed provided as argument.
+     */
+    public static RandomStream of(long seed) {
+        return of(seed, 0);
+    }
+
+    /**
+     * Returns one of the independent streams that can be derived from a seed.
+     * The same seed and index always produce the same stream.
+     * <p>
+     * @param seed The seed shared by all the streams.
+     * @param index The index of the stream (for instance, the number of the
+     * chain, thread or worker that uses it).
+     * @return The stream with the index provided as argument.
+     */
+    public static RandomStream of(long seed, long index) {
+        return new RandomStream(mix64(seed + index * GOLDEN_GAMMA), mixGamma(seed + (index + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Returns a stream with the state saved with {@link #getState()} and
+     * {@link #getGamma()}.
+     * <p>
+     * @param state The state of the stream.
+     * @param gamma The increment of the stream.
+     * @return A stream that continues from the state provided as argument.
+     */
+    public static RandomStream restore(long state, long gamma) {
+        return new RandomStream(state, gamma | 1L);
+    }
+
+    /**
+     * Returns a new stream, statistically independent from this one. Both
+     * streams can be used afterwards.
+     * <p>
+     * @return A new stream.
+     */
+    public RandomStream split() {
+        return new RandomStream(mix64(nextSeed()), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Returns the current state of this stream.
+     * <p>
+     * @return The current state of this stream.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Returns the increment of this stream.
+     * <p>
+     * @return The increment of this stream.
+     */
+    public long getGamma() {
+        return gamma;
+    }
+
+    /**
+     * Returns the next pseudorandom long value.
+     * <p>
+     * @return The next pseudorandom long value.
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * Returns the next pseudorandom value between zero (inclusive) and one
+     * (exclusive).
+     * <p>
+     * @return The next pseudorandom value between zero and one.
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Returns the next pseudorandom value from a normal distribution with mean
+     * zero and standard deviation one. Every call draws two new values, so the
+     * state of the stream is still only its two numbers.
+     * <p>
+     * @return The next pseudorandom value from a standard normal distribution.
+     */
+    public double nextGaussian() {
+        double u;
+        u = 1 - nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * nextDouble());
+    }
+
+    /**
+     * Returns the next pseudorandom value between zero (inclusive) and the
+     * bound provided as argument (exclusive).
+     * <p>
+     * @param bound The upper bound (must be positive).
+     * @return The next pseudorandom value between zero and the bound.
+     */
+    public int nextInt(int bound) {
+        int bits, value;
+        if (bound <= 0) {
+            throw new IllegalArgumentException("The bound must be positive.");
+        }
+        do {
+            bits = (int) (nextLong() >>> 33);
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+
+    private long nextSeed() {
+        return state += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        /*
+         * Avoids increments with too few bit transitions (as SplittableRandom does).
+         */
+        return Long.bitCount(z ^ (z >>> 1)) < 24 ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+    }
+
+}
@@ -0,0 +1,345 @@
+package BinPacking.Utils;
+
+import BinPacking.Problem.Bin;
+import BinPacking.Problem.BinPackingProblem;
+import BinPacking.Problem.Item;
+import BinPacking.Solver.BinPackingSolver;
+import BinPacking.Solver.Feature;
+import BinPacking.Solver.Heuristic;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides a persistent cache of the results obtained by solving instances
+ * with single heuristics.
+ * <p>
+ * Those results never change for a given instance, so they are stored on disk
+ * and reused by later runs. Every result is addressed by a hash (SHA-256) of
+ * the content of the instance (capacity, colors and items, regardless of the
+ * name or format of its file), the heuristic and the version of the solver
+ * ({@link #VERSION}, which must be increased whenever a change in the solver
+ * changes its results). Instances with the same content are therefore solved
+ * only once, even if they are stored in different folders, and the cache
+ * reports them as duplicates. Every result is stored in its own file,
+ * written to a temporary file and renamed, so several processes can share a
+ * cache.
+ * <p>
+ * @version 1.0
+ */
+public class ResultCache {
+
+    /**
+     * The version of the solver whose results are stored. Results saved by
+     * other versions are ignored.
+     */
+    public static final int VERSION = 1;
+
+    private final Path folder;
+    private final boolean assignments;
+    private final Map<String, Result> results;
+    private final Map<String, String> instances, duplicates;
+    private final AtomicInteger hits, misses;
+
+    /**
+     * Creates a new instance of <code>ResultCache</code>.
+     * <p>
+     * @param folder The folder where the results are stored (created if
+     * needed).
+     * @param assignments Whether the bin of every item is stored with the
+     * results or not.
+     */
+    public ResultCache(String folder, boolean assignments) {
+        this.folder = Paths.get(folder);
+        this.assignments = assignments;
+        results = new ConcurrentHashMap();
+        instances = new ConcurrentHashMap();
+        duplicates = new ConcurrentHashMap();
+        hits = new AtomicInteger();
+        misses = new AtomicInteger();
+    }
+
+    /**
+     * Returns the cache configured with the system properties
+     * <code>binpacking.resultCache</code> (the folder; the cache is disabled
+     * if it is not set) and <code>binpacking.resultCache.assignments</code>
+     * (false by default).
+     * <p>
+     * @return The cache configured with the system properties, or
+     * <code>null</code> if the cache is disabled.
+     */
+    public static ResultCache fromSystemProperties() {
+        String folder;
+        folder = System.getProperty("binpacking.resultCache");
+        if (folder == null || folder.trim().isEmpty()) {
+            return null;
+        }
+        return new ResultCache(folder.trim(), Boolean.getBoolean("binpacking.resultCache.assignments"));
+    }
+
+    /**
+     * Returns the hash of the content of an instance.
+     * <p>
+     * @param problem The instance.
+     * @return The hash of the content of the instance (64 hexadecimal digits).
+     */
+    public static String hash(BinPackingProblem problem) {
+        MessageDigest digest;
+        byte[] buffer;
+        Item[] items;
+        StringBuilder string;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        items = problem.getItems();
+        buffer = new byte[8];
+        update(digest, buffer, problem.getMaxCapacity(), problem.getMaxColors());
+        update(digest, buffer, items.length, 0);
+        for (Item item : items) {
+            update(digest, buffer, item.getSize(), item.getColor());
+        }
+        string = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            string.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return string.toString();
+    }
+
+    private static void update(MessageDigest digest, byte[] buffer, int first, int second) {
+        for (int i = 0; i < 4; i++) {
+            buffer[i] = (byte) (first >>> (24 - 8 * i));
+            buffer[4 + i] = (byte) (second >>> (24 - 8 * i));
+        }
+        digest.update(buffer);
+    }
+
+    /**
+     * Returns the result of solving an instance with a heuristic, from the
+     * cache when available; otherwise the instance is solved and the result is
+     * stored. Can be called from several threads at once.
+     * <p>
+     * @param problem The instance.
+     * @param heuristic The heuristic.
+     * @return The result of solving the instance with the heuristic.
+     */
+    public Result get(BinPackingProblem problem, Heuristic heuristic) {
+        return get(problem, problem.getFileName(), hash(problem), heuristic);
+    }
+
+    /**
+     * Returns the result of solving an instance with a heuristic, when the
+     * hash of the instance is already known.
+     * <p>
+     * @param problem The instance.
+     * @param name The name of the instance in the duplicates (for instance,
+     * its path, so the instances with the same file name in different folders
+     * are told apart).
+     * @param hash The hash of the instance (see {@link #hash(BinPackingProblem)}).
+     * @param heuristic The heuristic.
+     * @return The result of solving the instance with the heuristic.
+     */
+    public Result get(BinPackingProblem problem, String name, String hash, Heuristic heuristic) {
+        String key, previous;
+        Path file;
+        Result result;
+        previous = instances.putIfAbsent(hash, name);
+        if (previous != null && !previous.equals(name)) {
+            duplicates.put(name, previous);
+        }
+        key = hash + "-" + heuristic + "-v" + VERSION;
+        result = results.get(key);
+        if (result != null && (!assignments || result.assignment != null)) {
+            hits.incrementAndGet();
+            return result;
+        }
+        file = folder.resolve(hash.substring(0, 2)).resolve(key);
+        result = read(file);
+        if (result == null || (assignments && result.assignment == null)) {
+            misses.incrementAndGet();
+            result = solve(problem, heuristic);
+            write(file, result);
+        } else {
+            hits.incrementAndGet();
+        }
+        results.put(key, result);
+        return result;
+    }
+
+    /**
+     * Returns the number of results served from the cache.
+     * <p>
+     * @return The number of results served from the cache.
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of results that had to be computed.
+     * <p>
+     * @return The number of results that had to be computed.
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the instances whose content is the same as the content of an
+     * instance seen before (with a different file name).
+     * <p>
+     * @return The name of every duplicate instance and the name of the
+     * instance it duplicates.
+     */
+    public Map<String, String> getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Solves an instance with a heuristic.
+     * <p>
+     * @param problem The instance.
+     * @param heuristic The heuristic.
+     * @return The result of solving the instance with the heuristic.
+     */
+    private Result solve(BinPackingProblem problem, Heuristic heuristic) {
+        int[] assignment;
+        Item[] items;
+        List<Bin> bins;
+        BinPackingSolver solver;
+        Map<Item, Integer> positions;
+        solver = new BinPackingSolver(problem);
+        bins = solver.solve(heuristic);
+        assignment = null;
+        if (assignments) {
+            items = problem.getItems();
+            positions = new IdentityHashMap();
+            for (int i = 0; i < items.length; i++) {
+                positions.put(items[i], i);
+            }
+            assignment = new int[items.length];
+            Arrays.fill(assignment, -1);
+            for (int i = 0; i < bins.size(); i++) {
+                for (Item item : bins.get(i).getItems()) {
+                    assignment[positions.get(item)] = i;
+                }
+            }
+        }
+        return new Result(bins.size(), solver.getFeature(Feature.AVGW), assignment);
+    }
+
+    /**
+     * Reads a result from the cache.
+     * <p>
+     * @param file The file that contains the result.
+     * @return The result, or <code>null</code> if the file does not exist or
+     * cannot be read.
+     */
+    private Result read(Path file) {
+        int nbBins;
+        double avgw;
+        int[] assignment;
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new ByteArrayInputStream(java.nio.file.Files.readAllBytes(file)));
+            nbBins = in.readInt();
+            avgw = in.readDouble();
+            assignment = null;
+            if (in.readBoolean()) {
+                assignment = new int[in.readInt()];
+                for (int i = 0; i < assignment.length; i++) {
+                    assignment[i] = in.readInt();
+                }
+            }
+            return new Result(nbBins, avgw, assignment);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            /*
+             * A damaged entry is computed again.
+             */
+            return null;
+        }
+    }
+
+    /**
+     * Writes a result to the cache. Errors are reported but do not stop the
+     * program (the result is simply not cached).
+     * <p>
+     * @param file The file where the result will be saved.
+     * @param result The result.
+     */
+    private void write(Path file, Result result) {
+        Path tmp;
+        ByteArrayOutputStream bytes;
+        DataOutputStream out;
+        bytes = new ByteArrayOutputStream();
+        out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(result.nbBins);
+            out.writeDouble(result.avgw);
+            out.writeBoolean(result.assignment != null);
+            if (result.assignment != null) {
+                out.writeInt(result.assignment.length);
+                for (int bin : result.assignment) {
+                    out.writeInt(bin);
+                }
+            }
+            out.close();
+            java.nio.file.Files.createDirectories(file.getParent());
+            tmp = java.nio.file.Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            java.nio.file.Files.write(tmp, bytes.toByteArray());
+            try {
+                java.nio.file.Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                java.nio.file.Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.out.println("An error occurred while attempting to save the file \"" + file + "\".");
+            System.out.println("Exception: " + e.toString());
+        }
+    }
+
+    /**
+     * The result of solving an instance with a heuristic.
+     */
+    public static class Result {
+
+        /**
+         * The number of bins used.
+         */
+        public final int nbBins;
+        /**
+         * The average waste of the bins (the AVGW feature of the solution).
+         */
+        public final double avgw;
+        /**
+         * The position of the bin of every item (-1 for the items that were not
+         * packed), or <code>null</code> if it was not stored.
+         */
+        public final int[] assignment;
+
+        Result(int nbBins, double avgw, int[] assignment) {
+            this.nbBins = nbBins;
+            this.avgw = avgw;
+            this.assignment = assignment;
+        }
+    }
+
+}
@@ -0,0 +1,718 @@
+package BinPacking.Utils;
+
+import BinPacking.Events.FileWriteEvent;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Provides an append-only store for the results of an experiment, in a single
+ * binary file.
+ * <p>
+ * Every table of results (for instance, the AVGW of a hyper-heuristic on
+ * every training instance, or a condition matrix) is identified by a
+ * {@link Key} (epoch, seed, split and kind) and appended to the file as one
+ * block: a label per row and one column of doubles per value. The labels (the
+ * names of the instances, which are repeated by every table) are stored once,
+ * in a dictionary that grows with the blocks, and every row only stores the
+ * position of its label. The rows of a table are collected in a
+ * {@link Batch} (rows can be added from several threads at once) and the
+ * batches are encoded and appended by a background thread, so the threads
+ * producing results never wait for the disk.
+ * <p>
+ * A store can be reopened to append more tables (a block left incomplete by
+ * a crash is discarded). {@link #load(String)} maps the whole file and indexes
+ * its tables by key, and {@link Index#export(String, int)} writes them back as
+ * CSV files. Every table keeps the name of its CSV file and its
+ * {@link Layout}, so the export writes the same files (names, headers and
+ * columns) as the experiment that stored them.
+ * <p>
+ * @version 1.0
+ */
+public class ResultStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x42505253;
+    private static final int VERSION = 2;
+    private static final int QUEUE_SIZE = 256;
+    private static final Batch END = new Batch(null, null, null, null, null, null);
+
+    private final String fileName;
+    private final BlockingQueue<Batch> queue;
+    private final Map<String, Integer> dictionary;
+    private final Thread writer;
+    private volatile IOException error;
+
+    /**
+     * Creates a new instance of <code>ResultStore</code>. The tables are
+     * appended to the file if it already exists.
+     * <p>
+     * @param fileName The file where the results are stored.
+     */
+    public ResultStore(String fileName) {
+        long valid;
+        Index index;
+        this.fileName = fileName;
+        dictionary = new HashMap();
+        queue = new ArrayBlockingQueue(QUEUE_SIZE);
+        try {
+            if (new File(fileName).length() > 0) {
+                /*
+                 * The dictionary continues from the existing blocks, and an incomplete last block is discarded.
+                 */
+                index = load(fileName);
+                for (String label : index.dictionary) {
+                    dictionary.put(label, dictionary.size());
+                }
+                valid = index.length;
+                try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+                    if (file.length() > valid) {
+                        file.setLength(valid);
+                    }
+                }
+            } else {
+                try (DataOutputStream out = new DataOutputStream(new FileOutputStream(fileName, false))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("An error occurred while attempting to open the file \"" + fileName + "\".");
+            System.out.println("Exception: " + e.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+        writer = new Thread(new Writer(), "result-store");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the store configured with the system property
+     * <code>binpacking.resultStore</code> (the file of the store).
+     * <p>
+     * @return The store configured with the system property, or
+     * <code>null</code> if the property is not set.
+     */
+    public static ResultStore fromSystemProperties() {
+        String file;
+        file = System.getProperty("binpacking.resultStore");
+        if (file == null || file.trim().isEmpty()) {
+            return null;
+        }
+        return new ResultStore(file.trim());
+    }
+
+    /**
+     * Starts a new table of results, exported to
+     * <code>kind_split_epoch_seed.csv</code> with {@link Layout#RESULTS}.
+     * <p>
+     * @param key The key of the table.
+     * @param labelName The name of the column of labels (for instance,
+     * "File").
+     * @param columns The names of the columns of values.
+     * @return A batch where the rows of the table are added; the table is
+     * stored when the batch is committed.
+     */
+    public Batch batch(Key key, String labelName, String[] columns) {
+        return batch(key, key + ".csv", Layout.RESULTS, labelName, columns);
+    }
+
+    /**
+     * Starts a new table of results that is exported to a given file with a
+     * given layout.
+     * <p>
+     * @param key The key of the table.
+     * @param csvName The name of the CSV file the table is exported to (its
+     * folder, if any, is discarded).
+     * @param layout The layout of the CSV file.
+     * @param labelName The name of the column of labels (ignored by
+     * {@link Layout#CONDITIONS}).
+     * @param columns The names of the columns of values.
+     * @return A batch where the rows of the table are added; the table is
+     * stored when the batch is committed.
+     */
+    public Batch batch(Key key, String csvName, Layout layout, String labelName, String[] columns) {
+        return new Batch(this, key, new File(csvName).getName(), layout, labelName, columns.clone());
+    }
+
+    /**
+     * Waits until all the committed tables have been written and closes the
+     * file.
+     */
+    @Override
+    public void close() {
+        FileWriteEvent event;
+        event = new FileWriteEvent();
+        event.begin();
+        put(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
+            System.out.println("Exception: " + error.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+        if (event.shouldCommit()) {
+            event.fileName = fileName;
+            event.size = new File(fileName).length();
+            event.commit();
+        }
+    }
+
+    private void put(Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads and indexes all the tables of a store.
+     * <p>
+     * @param fileName The file of the store.
+     * @return The index of the tables in the store.
+     */
+    public static Index load(String fileName) {
+        int length, nbColumns, nbRows, start;
+        String split, kind, csvName, labelName;
+        Layout layout;
+        int epoch;
+        long seed;
+        int[] ids;
+        String[] columns, labels;
+        double[][] values;
+        ByteBuffer data;
+        Index index;
+        data = Files.map(fileName);
+        index = new Index();
+        try {
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                throw new IllegalArgumentException("The file \'" + fileName + "\' does not contain a result store (or its version is not supported).");
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("The file \'" + fileName + "\' does not contain a result store.");
+        }
+        index.length = data.position();
+        while (data.remaining() >= Integer.BYTES) {
+            length = data.getInt();
+            if (length < 0 || data.remaining() < length) {
+                break;
+            }
+            start = data.position();
+            epoch = data.getInt();
+            seed = data.getLong();
+            split = getString(data);
+            kind = getString(data);
+            csvName = getString(data);
+            layout = Layout.values()[data.getInt()];
+            labelName = getString(data);
+            for (int i = data.getInt(); i > 0; i--) {
+                index.dictionary.add(getString(data));
+            }
+            nbColumns = data.getInt();
+            columns = new String[nbColumns];
+            for (int j = 0; j < nbColumns; j++) {
+                columns[j] = getString(data);
+            }
+            nbRows = data.getInt();
+            ids = new int[nbRows];
+            data.asIntBuffer().get(ids);
+            data.position(data.position() + nbRows * Integer.BYTES);
+            labels = new String[nbRows];
+            for (int i = 0; i < nbRows; i++) {
+                labels[i] = index.dictionary.get(ids[i]);
+            }
+            values = new double[nbColumns][nbRows];
+            for (int j = 0; j < nbColumns; j++) {
+                data.asDoubleBuffer().get(values[j]);
+                data.position(data.position() + nbRows * Double.BYTES);
+            }
+            data.position(start + length);
+            index.tables.put(new Key(epoch, seed, split, kind),
+                    new Table(new Key(epoch, seed, split, kind), csvName, layout, labelName, columns, labels, values));
+            index.length = data.position();
+        }
+        return index;
+    }
+
+    private static String getString(ByteBuffer data) {
+        byte[] bytes;
+        bytes = new byte[data.getShort() & 0xFFFF];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes a batch as a block of the file. Only called by the background
+     * thread, which owns the dictionary.
+     * <p>
+     * @param batch The batch.
+     * @return The block.
+     * @throws IOException Never (the block is written to memory).
+     */
+    private byte[] encode(Batch batch) throws IOException {
+        int nbRows;
+        Integer id;
+        int[] ids;
+        List<String> added;
+        ByteArrayOutputStream bytes;
+        DataOutputStream out;
+        nbRows = batch.labels.size();
+        ids = new int[nbRows];
+        added = new ArrayList();
+        for (int i = 0; i < nbRows; i++) {
+            id = dictionary.get(batch.labels.get(i));
+            if (id == null) {
+                id = dictionary.size();
+                dictionary.put(batch.labels.get(i), id);
+                added.add(batch.labels.get(i));
+            }
+            ids[i] = id;
+        }
+        bytes = new ByteArrayOutputStream(64 + nbRows * (4 + 8 * batch.columns.length));
+        out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(batch.key.epoch);
+        out.writeLong(batch.key.seed);
+        out.writeUTF(batch.key.split);
+        out.writeUTF(batch.key.kind);
+        out.writeUTF(batch.csvName);
+        out.writeInt(batch.layout.ordinal());
+        out.writeUTF(batch.labelName);
+        out.writeInt(added.size());
+        for (String label : added) {
+            out.writeUTF(label);
+        }
+        out.writeInt(batch.columns.length);
+        for (String column : batch.columns) {
+            out.writeUTF(column);
+        }
+        out.writeInt(nbRows);
+        for (int i = 0; i < nbRows; i++) {
+            out.writeInt(ids[i]);
+        }
+        for (int j = 0; j < batch.columns.length; j++) {
+            for (int i = 0; i < nbRows; i++) {
+                out.writeDouble(batch.rows.get(i)[j]);
+            }
+        }
+        out.close();
+        return ByteBuffer.wrap(bytes.toByteArray()).putInt(0, bytes.size() - Integer.BYTES).array();
+    }
+
+    /**
+     * The layouts of the CSV files of the tables.
+     */
+    public enum Layout {
+        /**
+         * The column of labels first, followed by the values, rounded to the
+         * decimal places of the export (like the result files).
+         */
+        RESULTS,
+        /**
+         * The values with full precision, followed by the label and the last
+         * column as an integer, under a header that only names the values
+         * (like the files written by
+         * <code>HyperHeuristic.saveCondMatrix</code>, with the heuristic as
+         * the label and its frequency as the last column).
+         */
+        CONDITIONS
+    }
+
+    /**
+     * The key of a table of results.
+     */
+    public static class Key {
+
+        /**
+         * The number of epochs (or generations) of the training.
+         */
+        public final int epoch;
+        /**
+         * The seed of the hyper-heuristic.
+         */
+        public final long seed;
+        /**
+         * The set of instances (for instance, "Train" or "Test").
+         */
+        public final String split;
+        /**
+         * The kind of results (for instance, "Hyp", "rand" or "CondMatrix").
+         */
+        public final String kind;
+
+        /**
+         * Creates a new instance of <code>Key</code>.
+         * <p>
+         * @param epoch The number of epochs (or generations) of the training.
+         * @param seed The seed of the hyper-heuristic.
+         * @param split The set of instances.
+         * @param kind The kind of results.
+         */
+        public Key(int epoch, long seed, String split, String kind) {
+            this.epoch = epoch;
+            this.seed = seed;
+            this.split = split;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            Key other;
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            other = (Key) object;
+            return epoch == other.epoch && seed == other.seed && split.equals(other.split) && kind.equals(other.kind);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(epoch, seed, split, kind);
+        }
+
+        /**
+         * Returns this key as <code>kind_split_epoch_seed</code>.
+         * <p>
+         * @return This key as a string.
+         */
+        @Override
+        public String toString() {
+            return kind + "_" + split + "_" + epoch + "_" + seed;
+        }
+    }
+
+    /**
+     * The rows of a table, before they are stored.
+     */
+    public static class Batch {
+
+        private final ResultStore store;
+        private final Key key;
+        private final String csvName, labelName;
+        private final Layout layout;
+        private final String[] columns;
+        private final List<String> labels;
+        private final List<double[]> rows;
+        private boolean committed;
+
+        Batch(ResultStore store, Key key, String csvName, Layout layout, String labelName, String[] columns) {
+            this.store = store;
+            this.key = key;
+            this.csvName = csvName;
+            this.layout = layout;
+            this.labelName = labelName;
+            this.columns = columns;
+            labels = new ArrayList();
+            rows = new ArrayList();
+        }
+
+        /**
+         * Adds a row to the table. Can be called from several threads at
+         * once.
+         * <p>
+         * @param label The label of the row (for instance, the name of the
+         * instance).
+         * @param values The values of the row, one per column.
+         * @throws IllegalStateException If the batch has already been
+         * committed.
+         */
+        public synchronized void add(String label, double... values) {
+            if (committed) {
+                throw new IllegalStateException("The table \'" + key + "\' has already been committed.");
+            }
+            if (values.length != columns.length) {
+                throw new IllegalArgumentException("The table \'" + key + "\' has " + columns.length + " columns.");
+            }
+            labels.add(label);
+            rows.add(values.clone());
+        }
+
+        /**
+         * Hands the table to the store. No rows can be added afterwards.
+         * <p>
+         * @throws IllegalStateException If the batch has already been
+         * committed.
+         */
+        public synchronized void commit() {
+            if (committed) {
+                throw new IllegalStateException("The table \'" + key + "\' has already been committed.");
+            }
+            committed = true;
+            store.put(this);
+        }
+    }
+
+    /**
+     * A table of results read from a store.
+     */
+    public static class Table {
+
+        private final Key key;
+        private final String csvName, labelName;
+        private final Layout layout;
+        private final String[] columns, labels;
+        private final double[][] values;
+
+        Table(Key key, String csvName, Layout layout, String labelName, String[] columns, String[] labels, double[][] values) {
+            this.key = key;
+            this.csvName = csvName;
+            this.layout = layout;
+            this.labelName = labelName;
+            this.columns = columns;
+            this.labels = labels;
+            this.values = values;
+        }
+
+        /**
+         * Returns the key of this table.
+         * <p>
+         * @return The key of this table.
+         */
+        public Key getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the name of the CSV file this table is exported to.
+         * <p>
+         * @return The name of the CSV file of this table.
+         */
+        public String getCsvName() {
+            return csvName;
+        }
+
+        /**
+         * Returns the layout of the CSV file of this table.
+         * <p>
+         * @return The layout of the CSV file of this table.
+         */
+        public Layout getLayout() {
+            return layout;
+        }
+
+        /**
+         * Returns the names of the columns of values.
+         * <p>
+         * @return The names of the columns of values.
+         */
+        public String[] getColumns() {
+            return columns.clone();
+        }
+
+        /**
+         * Returns the label of every row.
+         * <p>
+         * @return The label of every row.
+         */
+        public String[] getLabels() {
+            return labels.clone();
+        }
+
+        /**
+         * Returns the values of a column.
+         * <p>
+         * @param column The name of the column.
+         * @return The values of the column (one per row), or <code>null</code>
+         * if the table has no such column.
+         */
+        public double[] getColumn(String column) {
+            for (int j = 0; j < columns.length; j++) {
+                if (columns[j].equals(column)) {
+                    return values[j].clone();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns this table in CSV format, with its layout.
+         * <p>
+         * @param decimals The number of decimal places of the values of
+         * {@link Layout#RESULTS}, or a negative number to write them with full
+         * precision (the values of {@link Layout#CONDITIONS} are always
+         * written with full precision).
+         * @return This table in CSV format.
+         */
+        public String toCsv(int decimals) {
+            int last;
+            StringBuilder string;
+            string = new StringBuilder();
+            if (layout == Layout.CONDITIONS) {
+                /*
+                 * The header only names the conditions; every row ends with its label and its frequency.
+                 */
+                last = columns.length - 1;
+                for (int j = 0; j < last; j++) {
+                    string.append(j > 0 ? ", " : "").append(columns[j]);
+                }
+                for (int i = 0; i < labels.length; i++) {
+                    string.append("\n");
+                    for (int j = 0; j < last; j++) {
+                        string.append(values[j][i]).append(", ");
+                    }
+                    string.append(labels[i]).append(", ").append((long) values[last][i]);
+                }
+                return string.toString();
+            }
+            string.append(labelName);
+            for (String column : columns) {
+                string.append(", ").append(column);
+            }
+            for (int i = 0; i < labels.length; i++) {
+                string.append("\n").append(labels[i]);
+                for (double[] column : values) {
+                    string.append(", ");
+                    if (decimals < 0) {
+                        string.append(column[i]);
+                    } else {
+                        ResultWriter.append(string, column[i], decimals);
+                    }
+                }
+            }
+            return string.toString();
+        }
+    }
+
+    /**
+     * The tables of a store, indexed by key (when a key was stored several
+     * times, the last table is kept).
+     */
+    public static class Index {
+
+        private final List<String> dictionary;
+        private final Map<Key, Table> tables;
+        private long length;
+
+        Index() {
+            dictionary = new ArrayList();
+            tables = new LinkedHashMap();
+        }
+
+        /**
+         * Returns the table with a given key.
+         * <p>
+         * @param key The key.
+         * @return The table with the key, or <code>null</code> if there is
+         * none.
+         */
+        public Table get(Key key) {
+            return tables.get(key);
+        }
+
+        /**
+         * Returns the tables of a given kind and split, in the order they were
+         * stored.
+         * <p>
+         * @param split The set of instances.
+         * @param kind The kind of results.
+         * @return The tables of the kind and split.
+         */
+        public List<Table> find(String split, String kind) {
+            List<Table> found;
+            found = new ArrayList();
+            for (Table table : tables.values()) {
+                if (table.key.split.equals(split) && table.key.kind.equals(kind)) {
+                    found.add(table);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Returns all the tables, in the order they were stored.
+         * <p>
+         * @return All the tables.
+         */
+        public Collection<Table> getTables() {
+            return tables.values();
+        }
+
+        /**
+         * Writes every table to its own CSV file (see
+         * {@link Table#getCsvName()}). With four decimal places, the files are
+         * the same ones written by <code>Run</code>.
+         * <p>
+         * @param folder The folder where the files will be saved.
+         * @param decimals The number of decimal places of the values, or a
+         * negative number to write them with full precision (see
+         * {@link Table#toCsv(int)}).
+         */
+        public void export(String folder, int decimals) {
+            new File(folder).mkdirs();
+            for (Table table : tables.values()) {
+                Files.save(table.toCsv(decimals), new File(folder, table.csvName).getPath());
+            }
+        }
+    }
+
+    /**
+     * Appends the committed batches to the file, until the end marker is
+     * found.
+     */
+    private class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            Batch batch;
+            OutputStream out;
+            try {
+                out = new BufferedOutputStream(new FileOutputStream(fileName, true), 1 << 16);
+            } catch (IOException e) {
+                error = e;
+                drain();
+                return;
+            }
+            try {
+                while ((batch = queue.take()) != END) {
+                    out.write(encode(batch));
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+                out.close();
+            } catch (IOException e) {
+                error = e;
+                drain();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Discards the batches after an error, so the threads committing them
+         * are never blocked.
+         */
+        private void drain() {
+            try {
+                while (queue.take() != END) {
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
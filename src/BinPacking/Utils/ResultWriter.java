@@ -0,0 +1,261 @@
+package BinPacking.Utils;
+
+import BinPacking.Events.FileWriteEvent;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Provides the methods to stream the rows of a result file (CSV) to disk as
+ * they are produced.
+ * <p>
+ * The rows are handed to a background thread that writes them through a
+ * buffered writer and flushes whenever it runs out of rows, so the threads
+ * producing the results never wait for the disk (unless they get far ahead of
+ * it). Rows can be written from several threads at once. When the writer is
+ * ordered, every row carries its index and the rows are written in the order
+ * of their indexes, regardless of the order in which they arrive; rows that
+ * arrive early wait in a reorder buffer.
+ * <p>
+ * The file has the same layout as the ones written with {@link Files#save}:
+ * one header line, one line per row and no line break at the end.
+ * <p>
+ * @version 1.0
+ */
+public class ResultWriter implements AutoCloseable {
+
+    private static final int QUEUE_SIZE = 1024;
+    private static final String END = new String("END");
+    private static final long[] POWERS = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000};
+
+    private final String fileName;
+    private final boolean ordered;
+    private final BlockingQueue<String> queue;
+    private final Map<Long, String> pending;
+    private final Thread writer;
+    private long next;
+    private volatile IOException error;
+
+    /**
+     * Creates a new instance of <code>ResultWriter</code> and writes the
+     * header of the file.
+     * <p>
+     * @param fileName The file where the rows will be saved.
+     * @param header The first line of the file.
+     * @param ordered Whether the rows must be written in the order of their
+     * indexes or as soon as they arrive.
+     */
+    public ResultWriter(String fileName, String header, boolean ordered) {
+        this.fileName = fileName;
+        this.ordered = ordered;
+        queue = new ArrayBlockingQueue(QUEUE_SIZE);
+        pending = new HashMap();
+        next = 0;
+        writer = new Thread(new Writer(header), "result-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes a row in the file. The row is written as soon as it arrives.
+     * <p>
+     * @param row The row to write (without the line break).
+     */
+    public void write(String row) {
+        put(row);
+    }
+
+    /**
+     * Writes the row with the index provided as argument. For ordered writers,
+     * the indexes must start at zero and every index must be written exactly
+     * once; the row is kept until all the previous rows have been written.
+     * <p>
+     * @param index The index of the row.
+     * @param row The row to write (without the line break).
+     */
+    public void write(long index, String row) {
+        if (!ordered) {
+            put(row);
+            return;
+        }
+        synchronized (pending) {
+            pending.put(index, row);
+            while ((row = pending.remove(next)) != null) {
+                put(row);
+                next++;
+            }
+        }
+    }
+
+    /**
+     * Waits until all the rows have been written and closes the file. Rows that
+     * are still waiting for a previous index are discarded.
+     */
+    @Override
+    public void close() {
+        FileWriteEvent event;
+        event = new FileWriteEvent();
+        event.begin();
+        put(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pending.isEmpty()) {
+            System.out.println(pending.size() + " rows were not written to the file \"" + fileName + "\" (missing indexes).");
+        }
+        if (error != null) {
+            System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
+            System.out.println("Exception: " + error.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
+        }
+        if (event.shouldCommit()) {
+            event.fileName = fileName;
+            event.size = new File(fileName).length();
+            event.commit();
+        }
+    }
+
+    /**
+     * Hands a row to the background thread.
+     * <p>
+     * @param row The row.
+     */
+    private void put(String row) {
+        try {
+            queue.put(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the value provided as argument with four decimal places (the
+     * same text produced by <code>new DecimalFormat("0.0000")</code>, without
+     * its cost).
+     * <p>
+     * @param value The value to format.
+     * @return The value with four decimal places.
+     */
+    public static String format(double value) {
+        return append(new StringBuilder(12), value, 4).toString();
+    }
+
+    /**
+     * Appends a value with a fixed number of decimal places to a string
+     * builder, as <code>DecimalFormat</code> does with a pattern such as
+     * <code>"0.0000"</code> (with a period as the decimal separator): values
+     * are rounded half to even and negative values keep their sign, even if
+     * they are rounded to zero (<code>-0.0</code> included). Values that are
+     * close to a tie once scaled are formatted by <code>DecimalFormat</code>
+     * itself, since its result depends on how the value was converted to
+     * decimal digits, and the scaled product may itself be rounded onto (or
+     * off) the tie.
+     * <p>
+     * @param string The string builder.
+     * @param value The value to append.
+     * @param decimals The number of decimal places (between 0 and 8).
+     * @return The string builder provided as argument.
+     */
+    public static StringBuilder append(StringBuilder string, double value, int decimals) {
+        long scaled, integer, fraction;
+        double product;
+        String digits;
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e10) {
+            return string.append(value);
+        }
+        product = Math.abs(value) * POWERS[decimals];
+        if (Math.abs(product - Math.floor(product) - 0.5) < Math.max(1e-6, 4 * Math.ulp(product))) {
+            return string.append(getFormat(decimals).format(value));
+        }
+        scaled = (long) Math.rint(product);
+        if (Math.copySign(1.0, value) < 0) {
+            string.append('-');
+        }
+        integer = scaled / POWERS[decimals];
+        fraction = scaled % POWERS[decimals];
+        string.append(integer);
+        if (decimals > 0) {
+            string.append('.');
+            digits = Long.toString(fraction);
+            for (int i = digits.length(); i < decimals; i++) {
+                string.append('0');
+            }
+            string.append(digits);
+        }
+        return string;
+    }
+
+    /**
+     * Returns the format of the values with a fixed number of decimal places
+     * (used near the ties).
+     * <p>
+     * @param decimals The number of decimal places.
+     * @return The format of the values.
+     */
+    private static DecimalFormat getFormat(int decimals) {
+        StringBuilder pattern;
+        pattern = new StringBuilder("0");
+        if (decimals > 0) {
+            pattern.append('.');
+            for (int i = 0; i < decimals; i++) {
+                pattern.append('0');
+            }
+        }
+        return new DecimalFormat(pattern.toString(), DecimalFormatSymbols.getInstance(Locale.ROOT));
+    }
+
+    /**
+     * Writes the rows in the queue to the file, until the end marker is found.
+     */
+    private class Writer implements Runnable {
+
+        private final String header;
+
+        Writer(String header) {
+            this.header = header;
+        }
+
+        @Override
+        public void run() {
+            String row;
+            BufferedWriter out;
+            try {
+                out = new BufferedWriter(new FileWriter(fileName, false), 1 << 16);
+                out.write(header);
+                while ((row = queue.take()) != END) {
+                    out.write('\n');
+                    out.write(row);
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+                out.close();
+            } catch (IOException e) {
+                error = e;
+                /*
+                 * Keeps draining the queue so the producers never block.
+                 */
+                try {
+                    while (queue.take() != END) {
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package BinPacking.Utils;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Provides the count, mean, variance, minimum and maximum of a stream of
+ * values, computed in a single pass and without storing the values.
+ * <p>
+ * The mean and the variance are updated with Welford's method, which does not
+ * lose precision when the values are large compared with their spread. Two
+ * instances can be combined (for instance, the partial results of a parallel
+ * stream):
+ * <pre>
+ * stats = values.parallel().collect(RunningStatistics::new, RunningStatistics::accept, RunningStatistics::combine);
+ * </pre>
+ * This class is not thread safe.
+ * <p>
+ * @version 1.0
+ */
+public class RunningStatistics implements DoubleConsumer {
+
+    private long count;
+    private double mean, m2, min, max;
+
+    /**
+     * Creates a new instance of <code>RunningStatistics</code> without values.
+     */
+    public RunningStatistics() {
+        count = 0;
+        mean = m2 = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Returns the statistics of the values provided as argument.
+     * <p>
+     * @param values The values to analyze.
+     * @return The statistics of the values provided as argument.
+     */
+    public static RunningStatistics of(double[] values) {
+        RunningStatistics statistics;
+        statistics = new RunningStatistics();
+        for (double value : values) {
+            statistics.accept(value);
+        }
+        return statistics;
+    }
+
+    /**
+     * Adds a value.
+     * <p>
+     * @param value The value to add.
+     */
+    @Override
+    public void accept(double value) {
+        double delta;
+        count++;
+        delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds the values summarized by another instance (Chan's parallel
+     * update).
+     * <p>
+     * @param other The statistics to add.
+     */
+    public void combine(RunningStatistics other) {
+        long total;
+        double delta;
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+        total = count + other.count;
+        delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of values added.
+     * <p>
+     * @return The number of values added.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values.
+     * <p>
+     * @return The mean of the values (zero if there are none).
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the sample variance of the values.
+     * <p>
+     * @return The sample variance of the values (zero if there are less than
+     * two).
+     */
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : 0;
+    }
+
+    /**
+     * Returns the sample standard deviation of the values.
+     * <p>
+     * @return The sample standard deviation of the values (zero if there are
+     * less than two).
+     */
+    public double getStdev() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the minimum of the values.
+     * <p>
+     * @return The minimum of the values (<code>Double.NaN</code> if there are
+     * none).
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the maximum of the values.
+     * <p>
+     * @return The maximum of the values (<code>Double.NaN</code> if there are
+     * none).
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    @Override
+    public String toString() {
+        return "n " + count + " | mean " + ResultWriter.format(getMean()) + " | stdev " + ResultWriter.format(getStdev())
+                + " | min " + ResultWriter.format(getMin()) + " | max " + ResultWriter.format(getMax());
+    }
+
+}
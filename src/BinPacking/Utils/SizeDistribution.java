@@ -0,0 +1,26 @@
+package BinPacking.Utils;
+
+/**
+ * Defines the item size distributions available to generate synthetic
+ * instances of the one dimensional class constrained bin packing problem.
+ * <p>
+ * @version 1.0
+ */
+public enum SizeDistribution {
+    /**
+     * Sizes drawn uniformly at random between 1 and the capacity of the bins.
+     */
+    UNIFORM,
+    /**
+     * Sizes generated in groups of three that exactly fill one bin, in the
+     * style of the triplet instances of Falkenauer (the first item takes
+     * between 38% and 49% of the capacity, the second at least 25% and the
+     * third item completes the bin).
+     */
+    TRIPLET,
+    /**
+     * Sizes drawn from a mixture of two normal distributions, one centered at
+     * 20% and one centered at 70% of the capacity of the bins.
+     */
+    BIMODAL
+}
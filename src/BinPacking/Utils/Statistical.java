@@ -1,8 +1,14 @@
 package BinPacking.Utils;
 
+import java.util.Arrays;
+
 /**
  * Provides a small set of statistical functions.
  * <p>
+ * These functions analyze values already stored in an array. To analyze a
+ * stream of values without storing them, use {@link RunningStatistics} (mean,
+ * deviation and extremes) and {@link QuantileSketch} (quantiles).
+ * <p>
  * @author José Carlos Ortiz Bayliss (jcobayliss@tec.mx)
  * @version 1.0
  */
@@ -32,71 +38,136 @@ public abstract class Statistical {
      * @return The standard deviation of the values provided as argument.
      */
     public static double stdev(double[] values) {
-        double mean, stdev;
-        mean = mean(values);
-        stdev = 0;
-        for (int i = 0; i < values.length; i++) {
-            stdev += Math.pow((values[i] - mean), 2);
-        }
-        if (values.length > 1) {
-            return Math.sqrt(stdev / (values.length - 1));
-        } else {
-            return 0;
-        }
+        return RunningStatistics.of(values).getStdev();
     }
 
     /**
-     * Returns the median of a values provided as argument.
+     * Returns the median of a values provided as argument. The median is
+     * found by selection (in linear expected time), without sorting the
+     * values.
      * <p>
      * @param values The values to analyze.
      * @return The median of the values provided as argument.
      */
     public static double median(double[] values) {
-        double median;        
-        double orderedValues[];
+        int half;
+        double upper, lower;
+        double[] tmp;
         /*
          * Safety check.
          */
         if (values.length == 0) {
             return Double.NaN;
         }
-        orderedValues = sort(values);
-        if (orderedValues.length % 2 == 1) {
-            median = orderedValues[(int) (orderedValues.length / 2)];
-        } else {
-            median = (orderedValues[(int) (orderedValues.length / 2) - 1] + orderedValues[(int) (orderedValues.length / 2)]) / 2;
+        tmp = values.clone();
+        half = tmp.length / 2;
+        upper = select(tmp, 0, tmp.length - 1, half);
+        if (tmp.length % 2 == 1) {
+            return upper;
+        }
+        /*
+         * The lower middle value is the largest value of the lower half.
+         */
+        lower = tmp[0];
+        for (int i = 1; i < half; i++) {
+            lower = Math.max(lower, tmp[i]);
+        }
+        return (lower + upper) / 2;
+    }
+
+    /**
+     * Returns the value at a given quantile of the values provided as argument
+     * (the smallest value such that at least that fraction of the values is
+     * smaller than or equal to it). The value is found by selection.
+     * <p>
+     * @param values The values to analyze.
+     * @param quantile The quantile, between 0 and 1.
+     * @return The value at the quantile.
+     */
+    public static double quantile(double[] values, double quantile) {
+        int rank;
+        double[] tmp;
+        if (values.length == 0) {
+            return Double.NaN;
+        }
+        rank = (int) Math.ceil(Math.max(0, Math.min(1, quantile)) * values.length) - 1;
+        tmp = values.clone();
+        return select(tmp, 0, tmp.length - 1, Math.max(0, rank));
+    }
+
+    /**
+     * Rearranges a range of an array so the value at a given position is the
+     * one that would be there if the range were sorted, with smaller or equal
+     * values before it and larger or equal values after it (quickselect with
+     * a median of three pivot, in linear expected time; ranges that do not
+     * shrink fast enough are sorted, so the worst case is O(n log n)).
+     * <p>
+     * @param values The values.
+     * @param first The first position of the range.
+     * @param last The last position of the range.
+     * @param k The position of the value to find.
+     * @return The value at the position given.
+     */
+    private static double select(double[] values, int first, int last, int k) {
+        int i, j, middle, budget;
+        double pivot, tmp;
+        budget = 2 * (32 - Integer.numberOfLeadingZeros(last - first + 1));
+        while (last - first > 16 && budget-- > 0) {
+            middle = (first + last) >>> 1;
+            if (values[middle] < values[first]) {
+                swap(values, middle, first);
+            }
+            if (values[last] < values[first]) {
+                swap(values, last, first);
+            }
+            if (values[last] < values[middle]) {
+                swap(values, last, middle);
+            }
+            pivot = values[middle];
+            i = first;
+            j = last;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    tmp = values[i];
+                    values[i++] = values[j];
+                    values[j--] = tmp;
+                }
+            }
+            if (k <= j) {
+                last = j;
+            } else if (k >= i) {
+                first = i;
+            } else {
+                return values[k];
+            }
         }
-        return median;
+        Arrays.sort(values, first, last + 1);
+        return values[k];
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double tmp;
+        tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
     }
 
     /**
      * Sorts the values provided as argument.
      * <p>
      * @param values The values to sort.
-     * @return The values sorted in ascending order.
+     * @return A copy of the values sorted in ascending order.
      */
     public static double[] sort(double[] values) {
-        int i, n;
-        double tempValue;
-        boolean swapped;
         double orderedValues[];
-        orderedValues = new double[values.length];
-        for (i = 0; i < values.length; i++) {
-            orderedValues[i] = values[i];
-        }
-        n = values.length;
-        do {
-            swapped = false;
-            for (i = 0; i < n - 1; i++) {
-                if (orderedValues[i] > orderedValues[i + 1]) {
-                    tempValue = orderedValues[i + 1];
-                    orderedValues[i + 1] = orderedValues[i];
-                    orderedValues[i] = tempValue;
-                    swapped = true;
-                }
-            }
-            n = n - 1;
-        } while (swapped);
+        orderedValues = values.clone();
+        Arrays.sort(orderedValues);
         return orderedValues;
     }
 
@@ -108,7 +179,7 @@ public abstract class Statistical {
      */
     public static double max(double[] values) {
         double maxValue;
-        maxValue = Double.MIN_VALUE;
+        maxValue = Double.NEGATIVE_INFINITY;
         /*
          * Safety check.
          */
@@ -131,7 +202,7 @@ public abstract class Statistical {
      */
     public static double min(double[] values) {
         double minValue;
-        minValue = Double.MAX_VALUE;
+        minValue = Double.POSITIVE_INFINITY;
         /*
          * Safety check.
          */
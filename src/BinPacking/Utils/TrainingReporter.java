@@ -0,0 +1,269 @@
+package BinPacking.Utils;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Provides the methods to report the progress of the training of a
+ * hyper-heuristic.
+ * <p>
+ * Instead of printing every training step, the reporter aggregates the steps
+ * and emits summary lines (items per second, acceptance rate, mean delta,
+ * temperature and elapsed time) at most once per reporting interval and at the
+ * end of every epoch. The lines are printed to the standard output or, when a
+ * file is provided, handed to a background thread that appends them to the
+ * file, so the training thread never waits for the output. If the background
+ * thread falls behind, the lines that do not fit in its queue are dropped and
+ * counted.
+ * <p>
+ * @version 1.0
+ */
+public class TrainingReporter {
+
+    private static final int QUEUE_SIZE = 4096;
+    private static final String END = new String("END");
+
+    private final Verbosity verbosity;
+    private final long interval;
+    private final String fileName;
+    private BlockingQueue<String> queue;
+    private Thread writer;
+    private int epoch;
+    private long start, epochStart, lastReport, dropped;
+    private long steps, epochSteps, epochAccepted, windowSteps, windowAccepted;
+    private double epochDelta, windowDelta, temperature;
+
+    /**
+     * Creates a new instance of <code>TrainingReporter</code> that prints to
+     * the standard output.
+     * <p>
+     * @param verbosity How much information is reported.
+     * @param interval The minimum time between two periodic summaries (in
+     * milliseconds).
+     */
+    public TrainingReporter(Verbosity verbosity, long interval) {
+        this(verbosity, interval, null);
+    }
+
+    /**
+     * Creates a new instance of <code>TrainingReporter</code>.
+     * <p>
+     * @param verbosity How much information is reported.
+     * @param interval The minimum time between two periodic summaries (in
+     * milliseconds).
+     * @param fileName The file where the lines will be appended, or
+     * <code>null</code> to print them to the standard output.
+     */
+    public TrainingReporter(Verbosity verbosity, long interval, String fileName) {
+        this.verbosity = verbosity;
+        this.interval = interval * 1000000L;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Creates a new instance of <code>TrainingReporter</code> configured with
+     * the system properties <code>binpacking.verbosity</code> (one of
+     * <code>QUIET</code>, <code>EPOCH</code>, <code>SUMMARY</code> or
+     * <code>STEP</code>, <code>SUMMARY</code> by default),
+     * <code>binpacking.reportInterval</code> (in milliseconds, 5000 by
+     * default) and <code>binpacking.reportFile</code> (the standard output by
+     * default).
+     * <p>
+     * @return A new reporter configured with the system properties.
+     */
+    public static TrainingReporter fromSystemProperties() {
+        return new TrainingReporter(
+                Verbosity.valueOf(System.getProperty("binpacking.verbosity", "SUMMARY").toUpperCase()),
+                Long.getLong("binpacking.reportInterval", 5000),
+                System.getProperty("binpacking.reportFile")
+        );
+    }
+
+    /**
+     * Starts a training run. When a file was provided, the background thread
+     * that writes to it is started.
+     */
+    public void begin() {
+        start = lastReport = System.nanoTime();
+        steps = 0;
+        dropped = 0;
+        if (fileName != null && verbosity != Verbosity.QUIET) {
+            queue = new ArrayBlockingQueue(QUEUE_SIZE);
+            writer = new Thread(new Writer(queue, fileName), "training-reporter");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Starts a new epoch.
+     * <p>
+     * @param epoch The number of the epoch (starting at zero).
+     * @param temperature The temperature at the beginning of the epoch.
+     */
+    public void startEpoch(int epoch, double temperature) {
+        this.epoch = epoch;
+        this.temperature = temperature;
+        epochStart = System.nanoTime();
+        epochSteps = epochAccepted = 0;
+        epochDelta = 0;
+    }
+
+    /**
+     * Records one training step.
+     * <p>
+     * @param closestCost The cost of the heuristic closest to the current state.
+     * @param bestCost The cost of the best heuristic for the current state.
+     * @param probability The probability of accepting the closest heuristic.
+     * @param accepted Whether the closest heuristic was accepted or not.
+     * @param temperature The current temperature.
+     */
+    public void step(double closestCost, double bestCost, double probability, boolean accepted, double temperature) {
+        long now;
+        this.temperature = temperature;
+        steps++;
+        epochSteps++;
+        windowSteps++;
+        epochDelta += bestCost - closestCost;
+        windowDelta += bestCost - closestCost;
+        if (accepted) {
+            epochAccepted++;
+            windowAccepted++;
+        }
+        if (verbosity == Verbosity.STEP) {
+            emit("step " + steps + " | prob " + probability + " | closestCost " + closestCost + " | bestCost " + bestCost);
+        }
+        if (verbosity == Verbosity.SUMMARY || verbosity == Verbosity.STEP) {
+            now = System.nanoTime();
+            if (now - lastReport >= interval) {
+                emit(summary("progress", windowSteps, windowAccepted, windowDelta, now - lastReport));
+                lastReport = now;
+                windowSteps = windowAccepted = 0;
+                windowDelta = 0;
+            }
+        }
+    }
+
+    /**
+     * Ends the current epoch and reports its summary.
+     * <p>
+     * @param temperature The temperature at the end of the epoch.
+     */
+    public void endEpoch(double temperature) {
+        this.temperature = temperature;
+        if (verbosity != Verbosity.QUIET) {
+            emit(summary("epoch", epochSteps, epochAccepted, epochDelta, System.nanoTime() - epochStart));
+        }
+    }
+
+    /**
+     * Reports a line about the training that is not a training step (for
+     * instance, why the training stopped). Nothing is reported when the
+     * verbosity is <code>QUIET</code>.
+     * <p>
+     * @param line The line to report.
+     */
+    public void report(String line) {
+        if (verbosity != Verbosity.QUIET) {
+            emit(line);
+        }
+    }
+
+    /**
+     * Ends the training run. Waits until the background thread (if any) has
+     * written all the pending lines.
+     */
+    public void finish() {
+        if (writer == null) {
+            return;
+        }
+        if (dropped > 0) {
+            System.out.println(dropped + " training progress lines were dropped.");
+        }
+        try {
+            if (writer.isAlive()) {
+                queue.put(END);
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        queue = null;
+    }
+
+    /**
+     * Returns a summary line.
+     * <p>
+     * @param kind The kind of summary.
+     * @param nbSteps The number of steps summarized.
+     * @param nbAccepted The number of steps where the closest heuristic was
+     * accepted.
+     * @param delta The sum of the deltas of the steps summarized.
+     * @param nanos The time (in nanoseconds) spent in the steps summarized.
+     * @return A summary line.
+     */
+    private String summary(String kind, long nbSteps, long nbAccepted, double delta, long nanos) {
+        return String.format("%s | epoch %d | %d items | %.1f items/s | acceptance %.4f | mean delta %.4f | temperature %.4f | elapsed %.1f s",
+                kind, epoch, nbSteps,
+                nanos > 0 ? nbSteps * 1e9 / nanos : 0,
+                nbSteps > 0 ? (double) nbAccepted / nbSteps : 0,
+                nbSteps > 0 ? delta / nbSteps : 0,
+                temperature,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Sends a line to the output of this reporter.
+     * <p>
+     * @param line The line to send.
+     */
+    private void emit(String line) {
+        if (queue == null) {
+            System.out.println(line);
+        } else if (!queue.offer(line)) {
+            dropped++;
+        }
+    }
+
+    /**
+     * Appends the lines in a queue to a file, until the end marker is found.
+     */
+    private static class Writer implements Runnable {
+
+        private final BlockingQueue<String> queue;
+        private final String fileName;
+
+        Writer(BlockingQueue<String> queue, String fileName) {
+            this.queue = queue;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void run() {
+            String line;
+            BufferedWriter out;
+            try {
+                out = new BufferedWriter(new FileWriter(fileName, true));
+                while ((line = queue.take()) != END) {
+                    out.write(line);
+                    out.newLine();
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+                out.close();
+            } catch (IOException e) {
+                System.out.println("An error occurred while attempting to save the file \"" + fileName + "\".");
+                System.out.println("Exception: " + e.toString());
+                queue.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package BinPacking.Utils;
+
+/**
+ * Defines how much information is reported while training a hyper-heuristic.
+ * <p>
+ * @version 1.0
+ */
+public enum Verbosity {
+    /**
+     * Nothing is reported.
+     */
+    QUIET,
+    /**
+     * One summary line at the end of every epoch.
+     */
+    EPOCH,
+    /**
+     * Periodic summary lines (rate-limited) plus one line at the end of every
+     * epoch.
+     */
+    SUMMARY,
+    /**
+     * One line for every training step, plus everything reported by
+     * <code>SUMMARY</code>. Only useful to debug small training sets.
+     */
+    STEP
+}
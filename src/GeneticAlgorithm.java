@@ -0,0 +1,394 @@
+import BinPacking.Problem.BinPackingProblem;
+import BinPacking.Solver.BinPackingSolver;
+import BinPacking.Solver.Feature;
+import BinPacking.Solver.Heuristic;
+import BinPacking.Solver.HyperHeuristic;
+import BinPacking.Solver.HyperHeuristicModel;
+import BinPacking.Utils.BinPackingProblemSet;
+import BinPacking.Utils.RandomStream;
+import BinPacking.Utils.ResultWriter;
+import BinPacking.Utils.TrainingReporter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Provides the methods to create and train a hyper-heuristic by evolving a
+ * population of condition matrices.
+ * <p>
+ * Unlike {@link SimulatedAnnealing}, which nudges one condition after every
+ * item, this hyper-heuristic scores whole condition matrices: the fitness of a
+ * matrix is the mean AVGW obtained when the instances of the training set are
+ * solved with it (lower is better). Every generation keeps the best matrices
+ * and fills the rest of the population with children obtained by tournament
+ * selection, uniform crossover (one condition at a time) and Gaussian
+ * mutation. The fitness evaluations of a generation (every pair of matrix and
+ * instance) run in parallel and are cached by matrix during the training, so
+ * the matrices that survive from one generation to the next are never solved
+ * again (the cache only keeps the survivors, and a new training starts with an
+ * empty cache). The
+ * training is reproducible for a given seed, regardless of the number of
+ * threads.
+ * <p>
+ * @version 1.0
+ */
+public class GeneticAlgorithm extends HyperHeuristic {
+
+    private static final double ELITE_RATE = 0.1;
+    private static final double MUTATION_RATE = 0.1;
+    private static final double MUTATION_SIGMA = 0.1;
+    private static final int TOURNAMENT_SIZE = 2;
+
+    private final double[][] conditions;
+    private final long seed;
+    private final int generations, populationSize;
+    private TrainingReporter reporter;
+    public int[] freqHeuristics;
+
+    /**
+     * Creates a new instance of <code>GeneticAlgorithm</code>.
+     * <p>
+     * @param features The features to be used to characterize the problem
+     * instances.
+     * @param heuristics The heuristics available for the hyper-heuristic.
+     * @param seed The seed to initialize the random number generator in this
+     * hyper-heuristic.
+     * @param generations The number of generations of the training.
+     * @param populationSize The number of condition matrices in every
+     * generation.
+     */
+    public GeneticAlgorithm(Feature[] features, Heuristic[] heuristics, long seed, int generations, int populationSize) {
+        super(features, heuristics);
+        RandomStream random;
+        this.seed = seed;
+        this.generations = generations;
+        this.populationSize = Math.max(2, populationSize);
+        reporter = TrainingReporter.fromSystemProperties();
+        freqHeuristics = new int[heuristics.length];
+        /*
+         * All heuristics begin within a hypersphere of radius 1 in the feature space.
+         */
+        conditions = new double[heuristics.length][features.length];
+        random = RandomStream.of(seed);
+        for (double[] condition : conditions) {
+            for (int j = 0; j < features.length; j++) {
+                condition[j] = -1 + 2 * random.nextDouble();
+            }
+        }
+    }
+
+    /**
+     * Sets the reporter of the progress of the training (one line per
+     * generation). The default reporter is configured with the system
+     * properties (see {@link TrainingReporter#fromSystemProperties()}).
+     * <p>
+     * @param reporter The reporter of the progress of the training.
+     */
+    public void setReporter(TrainingReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public Heuristic getHeuristic(BinPackingSolver solver) {
+        double[] state;
+        /*
+         * Calculates the current problem state.
+         */
+        state = new double[features.length];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = solver.getFeature(features[i]);
+        }
+        return getHeuristic(state);
+    }
+
+    @Override
+    public Heuristic getHeuristic(double[] state) {
+        int selected;
+        double distance, minDistance, tmp;
+        /*
+         * Selects the heuristic whose condition is the closest to the problem state.
+         */
+        minDistance = Double.MAX_VALUE;
+        selected = 0;
+        for (int i = 0; i < conditions.length; i++) {
+            distance = 0;
+            for (int j = 0; j < features.length; j++) {
+                tmp = state[j] - conditions[i][j];
+                distance += tmp * tmp;
+            }
+            if (distance < minDistance) {
+                minDistance = distance;
+                selected = i;
+            }
+        }
+        freqHeuristics[selected]++;
+        return heuristics[selected];
+    }
+
+    @Override
+    public HyperHeuristicModel freeze() {
+        long[] frequencies;
+        frequencies = new long[heuristics.length];
+        for (int i = 0; i < heuristics.length; i++) {
+            frequencies[i] = freqHeuristics[i];
+        }
+        return new HyperHeuristicModel(features, heuristics, conditions, frequencies);
+    }
+
+    /**
+     * Trains this hyper-heuristic on the instances stored in a folder. When the
+     * training ends, the conditions of this hyper-heuristic are the ones of the
+     * best matrix found.
+     * <p>
+     * @param folder The folder where the training instances are stored.
+     * @return The conditions of the best matrix found.
+     */
+    @Override
+    public double[][] train(String folder) {
+        int nbElites, size, evaluated;
+        double[] fitness, best;
+        double[][] population, next;
+        Integer[] order;
+        Map<Matrix, Double> cache;
+        BinPackingProblemSet instances;
+        RandomStream random;
+        instances = new BinPackingProblemSet(folder);
+        cache = new HashMap();
+        evaluated = 0;
+        random = RandomStream.of(seed, 1);
+        size = heuristics.length * features.length;
+        nbElites = Math.max(1, (int) (ELITE_RATE * populationSize));
+        /*
+         * The first individual is the current matrix; the rest are random.
+         */
+        population = new double[populationSize][];
+        population[0] = flatten(conditions);
+        for (int i = 1; i < populationSize; i++) {
+            population[i] = new double[size];
+            for (int j = 0; j < size; j++) {
+                population[i][j] = -1 + 2 * random.nextDouble();
+            }
+        }
+        best = population[0];
+        reporter.begin();
+        for (int g = 0; g <= generations; g++) {
+            evaluated -= cache.size();
+            fitness = evaluate(population, instances, cache);
+            evaluated += cache.size();
+            order = new Integer[populationSize];
+            for (int i = 0; i < populationSize; i++) {
+                order[i] = i;
+            }
+            final double[] scores = fitness;
+            Arrays.sort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+            best = population[order[0]];
+            reporter.report("generation " + g + " | best " + ResultWriter.format(fitness[order[0]]) + " | evaluated " + evaluated);
+            if (g == generations) {
+                break;
+            }
+            /*
+             * The best matrices survive; the rest of the population are children.
+             */
+            next = new double[populationSize][];
+            for (int i = 0; i < nbElites; i++) {
+                next[i] = population[order[i]];
+            }
+            /*
+             * Only the fitness of the survivors is kept.
+             */
+            cache.keySet().retainAll(Arrays.stream(next, 0, nbElites).map(Matrix::new).collect(Collectors.toSet()));
+            for (int i = nbElites; i < populationSize; i++) {
+                next[i] = mutate(crossover(
+                        population[tournament(fitness, random)],
+                        population[tournament(fitness, random)],
+                        random), random);
+            }
+            population = next;
+        }
+        reporter.finish();
+        for (int i = 0; i < heuristics.length; i++) {
+            System.arraycopy(best, i * features.length, conditions[i], 0, features.length);
+        }
+        return getConditions();
+    }
+
+    /**
+     * Returns a copy of the current conditions of this hyper-heuristic.
+     * <p>
+     * @return A copy of the current conditions of this hyper-heuristic.
+     */
+    public double[][] getConditions() {
+        double[][] copy;
+        copy = new double[conditions.length][];
+        for (int i = 0; i < conditions.length; i++) {
+            copy[i] = Arrays.copyOf(conditions[i], conditions[i].length);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the fitness (mean AVGW over the training set) of every matrix in
+     * a population. Only the matrices that were never evaluated are solved; all
+     * their instances are solved in parallel.
+     * <p>
+     * @param population The matrices to evaluate.
+     * @param instances The training instances.
+     * @param cache The fitness of the matrices already evaluated in this
+     * training (the new ones are added).
+     * @return The fitness of every matrix in the population.
+     */
+    private double[] evaluate(double[][] population, BinPackingProblemSet instances, Map<Matrix, Double> cache) {
+        double[] fitness;
+        double[][] results;
+        List<Matrix> pending;
+        List<HyperHeuristicModel> models;
+        Matrix matrix;
+        pending = new ArrayList();
+        for (double[] individual : population) {
+            matrix = new Matrix(individual);
+            if (!cache.containsKey(matrix) && !pending.contains(matrix)) {
+                pending.add(matrix);
+            }
+        }
+        models = new ArrayList();
+        for (Matrix tmp : pending) {
+            models.add(new HyperHeuristicModel(features, heuristics, unflatten(tmp.values)));
+        }
+        results = new double[pending.size()][instances.size()];
+        /*
+         * Every instance is requested once and solved with all the pending matrices.
+         */
+        IntStream.range(0, instances.size()).parallel().forEach(k -> {
+            BinPackingProblem problem;
+            BinPackingSolver solver;
+            problem = instances.get(k);
+            for (int i = 0; i < models.size(); i++) {
+                solver = new BinPackingSolver(problem);
+                solver.solve(models.get(i));
+                results[i][k] = solver.getFeature(Feature.AVGW);
+            }
+        });
+        for (int i = 0; i < pending.size(); i++) {
+            cache.put(pending.get(i), Arrays.stream(results[i]).sum() / Math.max(1, instances.size()));
+        }
+        fitness = new double[population.length];
+        for (int i = 0; i < population.length; i++) {
+            fitness[i] = cache.get(new Matrix(population[i]));
+        }
+        return fitness;
+    }
+
+    private int tournament(double[] fitness, RandomStream random) {
+        int selected, candidate;
+        selected = random.nextInt(fitness.length);
+        for (int i = 1; i < TOURNAMENT_SIZE; i++) {
+            candidate = random.nextInt(fitness.length);
+            if (fitness[candidate] < fitness[selected]) {
+                selected = candidate;
+            }
+        }
+        return selected;
+    }
+
+    private double[] crossover(double[] first, double[] second, RandomStream random) {
+        double[] child;
+        child = new double[first.length];
+        for (int i = 0; i < heuristics.length; i++) {
+            System.arraycopy(random.nextDouble() < 0.5 ? first : second, i * features.length, child, i * features.length, features.length);
+        }
+        return child;
+    }
+
+    private double[] mutate(double[] child, RandomStream random) {
+        for (int i = 0; i < child.length; i++) {
+            if (random.nextDouble() < MUTATION_RATE) {
+                child[i] += MUTATION_SIGMA * random.nextGaussian();
+            }
+        }
+        return child;
+    }
+
+    private double[] flatten(double[][] matrix) {
+        double[] values;
+        values = new double[heuristics.length * features.length];
+        for (int i = 0; i < matrix.length; i++) {
+            System.arraycopy(matrix[i], 0, values, i * features.length, features.length);
+        }
+        return values;
+    }
+
+    private double[][] unflatten(double[] values) {
+        double[][] matrix;
+        matrix = new double[heuristics.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = Arrays.copyOfRange(values, i * features.length, (i + 1) * features.length);
+        }
+        return matrix;
+    }
+
+    /**
+     * Saves condition matrix with frequency using each heuristic
+     * @param fileName
+     */
+    @Override
+    public void saveCondMatrix(String fileName) {
+        StringBuilder string;
+        ResultWriter writer;
+        string = new StringBuilder();
+        for (Feature feature : features) {
+            string.append(feature).append(", ");
+        }
+        string.delete(string.length() - 2, string.length());
+        writer = new ResultWriter(fileName, string.toString(), false);
+        for (int i = 0; i < heuristics.length; i++) {
+            string.setLength(0);
+            for (int j = 0; j < features.length; j++) {
+                string.append(conditions[i][j]).append(", ");
+            }
+            string.append(heuristics[i].toString()).append(", ");
+            string.append(freqHeuristics[i]);
+            writer.write(string.toString());
+        }
+        writer.close();
+        freqHeuristics = new int[heuristics.length];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string;
+        string = new StringBuilder();
+        for (int i = 0; i < conditions.length; i++) {
+            string.append(Arrays.toString(conditions[i])).append(" => ").append(heuristics[i]).append("\n");
+        }
+        return string.toString().trim();
+    }
+
+    /**
+     * A condition matrix used as the key of the fitness cache.
+     */
+    private static class Matrix {
+
+        private final double[] values;
+        private final int hash;
+
+        Matrix(double[] values) {
+            this.values = values;
+            hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Matrix && hash == ((Matrix) object).hash && Arrays.equals(values, ((Matrix) object).values);
+        }
+    }
+
+}
@@ -4,8 +4,13 @@ import BinPacking.Solver.BinPackingSolver;
 import BinPacking.Solver.Feature;
 import BinPacking.Solver.Heuristic;
 import BinPacking.Solver.HyperHeuristic;
-import BinPacking.Utils.Files;
-import java.text.DecimalFormat;
+import BinPacking.Solver.HyperHeuristicModel;
+import BinPacking.Utils.Comparison;
+import BinPacking.Utils.Metrics;
+import BinPacking.Utils.ResultCache;
+import BinPacking.Utils.ResultStore;
+import BinPacking.Utils.ResultWriter;
+import java.util.stream.IntStream;
 
 /**
  * Runs the bin packing framework.
@@ -15,12 +20,24 @@ import java.text.DecimalFormat;
  */
 public class Run {
 
+    /*
+     * The store where the results are also saved (if enabled with -Dbinpacking.resultStore=<file>).
+     */
+    private static final ResultStore STORE = ResultStore.fromSystemProperties();
+
+    /*
+     * The cache of the results of the single heuristics, shared by all the sets so the duplicate instances are found
+     * across folders (if enabled with -Dbinpacking.resultCache=<dir>).
+     */
+    private static final ResultCache CACHE = ResultCache.fromSystemProperties();
+
     public static void main(String[] args) {
+        double[] costs;
         HyperHeuristic hyperHeuristic;
         /*
          * Calculates the initial states of a set of problem instances by using some specific features.
          */
-        characterizeSet("Instances/Training", "features.csv",
+        characterizeSet("Instances/Training", "features.csv", new ResultStore.Key(0, 0, "Train", "features"),
                 new Feature[]{
                     Feature.AVGL,
                     Feature.STDL,
@@ -37,7 +54,7 @@ public class Run {
         /*
          * Solves a set of problem instances by using some specific heuristics.
          */
-        solveSet("Instances/Training", "heuristics_Train.csv",
+        solveSet("Instances/Training", "heuristics_Train.csv", new ResultStore.Key(0, 0, "Train", "heuristics"),
                 new Heuristic[]{
                     Heuristic.FIRST_FIT,
                     Heuristic.FIRST_FIT_SC,
@@ -53,7 +70,7 @@ public class Run {
                     Heuristic.ALMOST_WORST_FIT_DC
                 }
         );
-        solveSet("Instances/Training", "heuristics_Test.csv",
+        solveSet("Instances/Training", "heuristics_Test.csv", new ResultStore.Key(0, 0, "Test", "heuristics"),
                 new Heuristic[]{
                     Heuristic.FIRST_FIT,
                     Heuristic.FIRST_FIT_SC,
@@ -111,10 +128,14 @@ public class Run {
                 
                 //Save results (average waste) of random heuristics with range 0.0-1.0
                 
-                solveSet("Instances/Training", "rand_Train_" + exp_epochs[ep] + "_" + i + ".csv", hyperHeuristic);
-                hyperHeuristic.saveCondMatrix("randCondMatrixTrain_" + exp_epochs[ep] + "_" + i + ".csv");
-                solveSet("Instances/Testing", "rand_Test_" + exp_epochs[ep] + "_" + i + ".csv", hyperHeuristic);
-                hyperHeuristic.saveCondMatrix("randCondMatrixTest_" + exp_epochs[ep] + "_" + i + ".csv");
+                solveSet("Instances/Training", "rand_Train_" + exp_epochs[ep] + "_" + i + ".csv", hyperHeuristic,
+                        new ResultStore.Key(exp_epochs[ep], i, "Train", "rand"));
+                saveCondMatrix(hyperHeuristic, new ResultStore.Key(exp_epochs[ep], i, "Train", "randCondMatrix"),
+                        "randCondMatrixTrain_" + exp_epochs[ep] + "_" + i + ".csv");
+                solveSet("Instances/Testing", "rand_Test_" + exp_epochs[ep] + "_" + i + ".csv", hyperHeuristic,
+                        new ResultStore.Key(exp_epochs[ep], i, "Test", "rand"));
+                saveCondMatrix(hyperHeuristic, new ResultStore.Key(exp_epochs[ep], i, "Test", "randCondMatrix"),
+                        "randCondMatrixTest_" + exp_epochs[ep] + "_" + i + ".csv");
                 
                 
                 //System.out.println(hyperHeuristic);
@@ -124,19 +145,39 @@ public class Run {
                 /*
                  * Solves a set of problem instances (the ones used for training) by using the previously defined hyper-heuristic.
                  */
-                solveSet("Instances/Training", "Hyp_Train_" + exp_epochs[ep] + "_" + i + ".csv", hyperHeuristic);
-                hyperHeuristic.saveCondMatrix("HypCondMatrixTrain_" + exp_epochs[ep] + "_" + i + ".csv");
+                solveSet("Instances/Training", "Hyp_Train_" + exp_epochs[ep] + "_" + i + ".csv", hyperHeuristic,
+                        new ResultStore.Key(exp_epochs[ep], i, "Train", "Hyp"));
+                saveCondMatrix(hyperHeuristic, new ResultStore.Key(exp_epochs[ep], i, "Train", "HypCondMatrix"),
+                        "HypCondMatrixTrain_" + exp_epochs[ep] + "_" + i + ".csv");
                 /*
                  * Solves a set of problem instances (the ones used for testing) by using the previously defined hyper-heuristic.
                  */
-                solveSet("Instances/Testing", "Hyp_Test_" + exp_epochs[ep] + "_" + i + ".csv", hyperHeuristic);
-                hyperHeuristic.saveCondMatrix("HypCondMatrixTest" + exp_epochs[ep] + "_" + i + ".csv");
+                costs = solveSet("Instances/Testing", "Hyp_Test_" + exp_epochs[ep] + "_" + i + ".csv", hyperHeuristic,
+                        new ResultStore.Key(exp_epochs[ep], i, "Test", "Hyp"));
+                saveCondMatrix(hyperHeuristic, new ResultStore.Key(exp_epochs[ep], i, "Test", "HypCondMatrix"),
+                        "HypCondMatrixTest" + exp_epochs[ep] + "_" + i + ".csv");
+                /*
+                 * Compares the hyper-heuristic with its heuristics (if enabled with -Dbinpacking.compare=true).
+                 */
+                if (Boolean.getBoolean("binpacking.compare")) {
+                    compareSet("Instances/Testing", hyperHeuristic, costs);
+                }
                 //System.out.println(hyperHeuristic);
                 
             }
         }
-        
-       
+        /*
+         * Saves the metrics recorded during the experiment (if enabled with -Dbinpacking.metrics=true).
+         */
+        if (Metrics.isEnabled()) {
+            Metrics.save("metrics.txt");
+        }
+        /*
+         * Waits until all the results have been stored (if enabled with -Dbinpacking.resultStore=<file>).
+         */
+        if (STORE != null) {
+            STORE.close();
+        }
     }
 
     /**
@@ -145,17 +186,26 @@ public class Run {
      * <p>
      * @param folder The folder where the instances are stored.
      * @param fileName The name of the file where the results will be saved.
+     * @param key The key of the features in the result store (ignored if the
+     * store is not enabled).
      * @param features The features to be used to characterize the problem
      * instances.
      */
-    private static void characterizeSet(String folder, String fileName, Feature[] features) {
+    private static void characterizeSet(String folder, String fileName, ResultStore.Key key, Feature[] features) {
+        String[] columns;
+        double[] values;
         StringBuilder string;
-        DecimalFormat format;
         BinPackingProblemSet set;
         BinPackingSolver solver;
+        ResultWriter writer;
+        ResultStore.Batch batch;
         string = new StringBuilder();
         set = new BinPackingProblemSet(folder);
-        format = new DecimalFormat("0.0000");
+        columns = new String[features.length];
+        for (int j = 0; j < features.length; j++) {
+            columns[j] = features[j].toString();
+        }
+        batch = STORE == null ? null : STORE.batch(key, fileName, ResultStore.Layout.RESULTS, "File", columns);
         /*
          * Prints the header of the file.
          */
@@ -164,20 +214,28 @@ public class Run {
             string.append(feature).append(", ");
         }
         string.delete(string.length() - 2, string.length());
-        string.append("\n");
+        writer = new ResultWriter(fileName, string.toString(), false);
         /*
          * Prints the features for each instance in the set.
          */
-        for (BinPackingProblem problem : set.getInstances()) {
-            string.append(problem.getFileName()).append(", ");
-            for (Feature feature : features) {
+        for (BinPackingProblem problem : set) {
+            string.setLength(0);
+            string.append(problem.getFileName());
+            values = new double[features.length];
+            for (int j = 0; j < features.length; j++) {
                 solver = new BinPackingSolver(problem);
-                string.append(format.format(solver.getFeature(feature))).append(", ");
+                values[j] = solver.getFeature(features[j]);
+                ResultWriter.append(string.append(", "), values[j], 4);
             }
-            string.delete(string.length() - 2, string.length());
-            string.append("\n");
+            writer.write(string.toString());
+            if (batch != null) {
+                batch.add(problem.getFileName(), values);
+            }
+        }
+        writer.close();
+        if (batch != null) {
+            batch.commit();
         }
-        Files.save(string.toString().trim(), fileName);
     }
 
     /**
@@ -186,18 +244,25 @@ public class Run {
      * <p>
      * @param folder The folder where the instances are stored.
      * @param fileName The name of the file where the results will be saved.
+     * @param key The key of the results in the result store (ignored if the
+     * store is not enabled).
      * @param heuristics The heuristics to be used to solve the problem
      * instances.
      */
-    private static void solveSet(String folder, String fileName, Heuristic[] heuristics) {
+    private static void solveSet(String folder, String fileName, ResultStore.Key key, Heuristic[] heuristics) {
+        int hits, misses;
+        String[] names;
+        double[][] values;
         StringBuilder string;
-        DecimalFormat format;
         BinPackingProblemSet set;
-        BinPackingSolver solver;
+        ResultWriter writer;
+        ResultStore.Batch batch;
         string = new StringBuilder();
         set = new BinPackingProblemSet(folder);
-        //Reset freqMatrix in SimulatedAnnealing
-        format = new DecimalFormat("0.0000");
+        names = new String[set.size()];
+        values = new double[set.size()][heuristics.length];
+        hits = CACHE == null ? 0 : CACHE.getHits();
+        misses = CACHE == null ? 0 : CACHE.getMisses();
         /*
          * Prints the header of the file.
          */
@@ -206,21 +271,51 @@ public class Run {
             string.append(heuristic).append(", ");
         }
         string.delete(string.length() - 2, string.length());
-        string.append("\n");
+        writer = new ResultWriter(fileName, string.toString(), true);
         /*
-         * Prints the features and results for each instance in the set.
+         * Prints the features and results for each instance in the set. The
+         * instances are solved in parallel and the rows are written in order.
          */
-        for (BinPackingProblem problem : set.getInstances()) {
-            string.append(problem.getFileName()).append(", ");
-            for (Heuristic heuristic : heuristics) {
-                solver = new BinPackingSolver(problem);
-                solver.solve(heuristic);
-                string.append(format.format(solver.getFeature(Feature.AVGW))).append(", ");
+        IntStream.range(0, set.size()).parallel().forEach(i -> {
+            String hash;
+            StringBuilder row;
+            BinPackingProblem problem;
+            BinPackingSolver solver;
+            problem = set.get(i);
+            names[i] = problem.getFileName();
+            row = new StringBuilder();
+            row.append(problem.getFileName());
+            /*
+             * The results of the single heuristics are taken from the cache (if enabled with -Dbinpacking.resultCache=<dir>).
+             */
+            hash = CACHE == null ? null : ResultCache.hash(problem);
+            for (int h = 0; h < heuristics.length; h++) {
+                if (CACHE != null) {
+                    values[i][h] = CACHE.get(problem, folder + "/" + problem.getFileName(), hash, heuristics[h]).avgw;
+                } else {
+                    solver = new BinPackingSolver(problem);
+                    solver.solve(heuristics[h]);
+                    values[i][h] = solver.getFeature(Feature.AVGW);
+                }
+                ResultWriter.append(row.append(", "), values[i][h], 4);
             }
-            string.delete(string.length() - 2, string.length());
-            string.append("\n");
+            writer.write(i, row.toString());
+        });
+        writer.close();
+        /*
+         * Stores the results in the order of the set.
+         */
+        if (STORE != null) {
+            batch = STORE.batch(key, fileName, ResultStore.Layout.RESULTS, "File", getNames(heuristics));
+            for (int i = 0; i < names.length; i++) {
+                batch.add(names[i], values[i]);
+            }
+            batch.commit();
+        }
+        if (CACHE != null) {
+            System.out.println(folder + ": " + (CACHE.getHits() - hits) + " results from the cache, " + (CACHE.getMisses() - misses) + " solved, "
+                    + CACHE.getDuplicates().size() + " duplicate instances so far.");
         }
-        Files.save(string.toString().trim(), fileName);
     }
 
     /**
@@ -231,29 +326,152 @@ public class Run {
      * @param fileName The name of the file where the results will be saved.
      * @param hyperHeuristic The hyper-heuristic to be used to solve the problem
      * instances.
+     * @param key The key of the results in the result store (ignored if the
+     * store is not enabled).
+     * @return The cost (AVGW) of every instance, in the order of the set.
      */
-    private static void solveSet(String folder, String fileName, HyperHeuristic hyperHeuristic) {
+    private static double[] solveSet(String folder, String fileName, HyperHeuristic hyperHeuristic, ResultStore.Key key) {
+        int i;
+        double cost;
+        double[] costs;
         StringBuilder string;
-        DecimalFormat format;
         BinPackingProblemSet set;
         BinPackingSolver solver;
+        ResultWriter writer;
+        ResultStore.Batch batch;
         string = new StringBuilder();
+        batch = STORE == null ? null : STORE.batch(key, fileName, ResultStore.Layout.RESULTS, "File", new String[]{"Hyper-heuristic"});
         set = new BinPackingProblemSet(folder);
-        format = new DecimalFormat("0.0000");
         /*
          * Prints the header of the file.
          */
-        string.append("File, Hyper-heuristic\n");
+        writer = new ResultWriter(fileName, "File, Hyper-heuristic", false);
         /*
          * Prints the features and results for each instance in the set.
          */
-        for (BinPackingProblem problem : set.getInstances()) {
+        costs = new double[set.size()];
+        i = 0;
+        for (BinPackingProblem problem : set) {
+            string.setLength(0);
             string.append(problem.getFileName()).append(", ");
             solver = new BinPackingSolver(problem);
             solver.solve(hyperHeuristic);
-            string.append(format.format(solver.getFeature(Feature.AVGW))).append("\n");
+            cost = costs[i++] = solver.getFeature(Feature.AVGW);
+            ResultWriter.append(string, cost, 4);
+            writer.write(string.toString());
+            if (batch != null) {
+                batch.add(problem.getFileName(), cost);
+            }
+        }
+        writer.close();
+        if (batch != null) {
+            batch.commit();
+        }
+        return costs;
+    }
+
+    /**
+     * Solves a set of bin packing problem instances by using each of the
+     * heuristics of a hyper-heuristic, and prints the statistical comparison
+     * of the hyper-heuristic with every heuristic (see
+     * {@link Comparison#report(String[], double[][], int)}).
+     * <p>
+     * @param folder The folder where the instances are stored.
+     * @param hyperHeuristic The hyper-heuristic to compare.
+     * @param costs The costs of the hyper-heuristic on the set (see
+     * {@link #solveSet(String, String, HyperHeuristic, ResultStore.Key)}).
+     */
+    private static void compareSet(String folder, HyperHeuristic hyperHeuristic, double[] costs) {
+        String hash;
+        String[] names;
+        double[][] results;
+        Heuristic[] heuristics;
+        BinPackingProblem problem;
+        BinPackingProblemSet set;
+        BinPackingSolver solver;
+        set = new BinPackingProblemSet(folder);
+        heuristics = hyperHeuristic.getHeuristics();
+        names = new String[heuristics.length + 1];
+        results = new double[heuristics.length + 1][set.size()];
+        for (int h = 0; h < heuristics.length; h++) {
+            names[h] = heuristics[h].toString();
+        }
+        for (int i = 0; i < set.size(); i++) {
+            problem = set.get(i);
+            hash = CACHE == null ? null : ResultCache.hash(problem);
+            for (int h = 0; h < heuristics.length; h++) {
+                if (CACHE != null) {
+                    results[h][i] = CACHE.get(problem, folder + "/" + problem.getFileName(), hash, heuristics[h]).avgw;
+                } else {
+                    solver = new BinPackingSolver(problem);
+                    solver.solve(heuristics[h]);
+                    results[h][i] = solver.getFeature(Feature.AVGW);
+                }
+            }
+        }
+        names[heuristics.length] = "Hyper-heuristic";
+        results[heuristics.length] = costs;
+        System.out.println(folder + ":");
+        System.out.println(Comparison.report(names, results, heuristics.length));
+    }
+
+    /**
+     * Saves the condition matrix of a hyper-heuristic (see
+     * {@link HyperHeuristic#saveCondMatrix(String)}) and, if enabled, in the
+     * result store: one row per heuristic with its condition and the number of
+     * times it has been selected. The matrix is stored first, since saving it
+     * resets the frequencies of the simulated annealing.
+     * <p>
+     * @param hyperHeuristic The hyper-heuristic.
+     * @param key The key of the condition matrix in the result store.
+     * @param fileName The name of the file where the condition matrix will be
+     * saved.
+     */
+    private static void saveCondMatrix(HyperHeuristic hyperHeuristic, ResultStore.Key key, String fileName) {
+        String[] columns;
+        double[] row;
+        long[] frequencies;
+        Feature[] features;
+        Heuristic[] heuristics;
+        HyperHeuristicModel model;
+        ResultStore.Batch batch;
+        if (STORE == null) {
+            hyperHeuristic.saveCondMatrix(fileName);
+            return;
+        }
+        model = hyperHeuristic.freeze();
+        features = model.getFeatures();
+        heuristics = model.getHeuristics();
+        frequencies = model.getFrequencies();
+        columns = new String[features.length + 1];
+        for (int j = 0; j < features.length; j++) {
+            columns[j] = features[j].toString();
+        }
+        columns[features.length] = "Frequency";
+        batch = STORE.batch(key, fileName, ResultStore.Layout.CONDITIONS, "Heuristic", columns);
+        for (int i = 0; i < heuristics.length; i++) {
+            row = new double[features.length + 1];
+            System.arraycopy(model.getCondition(i), 0, row, 0, features.length);
+            row[features.length] = frequencies[i];
+            batch.add(heuristics[i].toString(), row);
+        }
+        batch.commit();
+        hyperHeuristic.saveCondMatrix(fileName);
+    }
+
+    /**
+     * Returns the names of some heuristics.
+     * <p>
+     * @param heuristics The heuristics.
+     * @return The names of the heuristics, in the same order.
+     */
+    private static String[] getNames(Heuristic[] heuristics) {
+        String[] names;
+        names = new String[heuristics.length];
+        for (int i = 0; i < heuristics.length; i++) {
+            names[i] = heuristics[i].toString();
         }
-        Files.save(string.toString().trim(), fileName);
+        return names;
     }
 
 }
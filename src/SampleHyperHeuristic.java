@@ -1,6 +1,7 @@
 
 
 import BinPacking.Solver.HyperHeuristic;
+import BinPacking.Solver.HyperHeuristicModel;
 import BinPacking.Solver.Heuristic;
 import BinPacking.Solver.Feature;
 import BinPacking.Solver.BinPackingSolver;
@@ -42,9 +43,7 @@ public class SampleHyperHeuristic extends HyperHeuristic {
 
     @Override
     public Heuristic getHeuristic(BinPackingSolver solver) {
-        double distance, minDistance;
         double[] state;
-        Heuristic heuristic;
         /*
          * Calculates the current problem state.
          */
@@ -52,6 +51,13 @@ public class SampleHyperHeuristic extends HyperHeuristic {
         for (int i = 0; i < state.length; i++) {
             state[i] = solver.getFeature(features[i]);
         }
+        return getHeuristic(state);
+    }
+
+    @Override
+    public Heuristic getHeuristic(double[] state) {
+        double distance, minDistance;
+        Heuristic heuristic;
         /*
          * Calculates the distance from the problem state to each of the condition in the hyper-heuristic.
          */
@@ -67,6 +73,11 @@ public class SampleHyperHeuristic extends HyperHeuristic {
         return heuristic;
     }
 
+    @Override
+    public HyperHeuristicModel freeze() {
+        return new HyperHeuristicModel(features, heuristics, conditions);
+    }
+
     @Override
     public String toString() {
         StringBuilder string;
@@ -1,17 +1,31 @@
 
 
+import BinPacking.Events.EpochEvent;
+import BinPacking.Events.LookaheadEvent;
 import BinPacking.Problem.BinPackingProblem;
 import BinPacking.Problem.Item;
 import BinPacking.Solver.HyperHeuristic;
+import BinPacking.Solver.HyperHeuristicModel;
 import BinPacking.Solver.Heuristic;
 import BinPacking.Solver.Feature;
 import BinPacking.Solver.BinPackingSolver;
 import BinPacking.Solver.ClosestBest;
+import BinPacking.Solver.IncrementalEvaluator;
+import BinPacking.Solver.RolloutEvaluator;
 import BinPacking.Utils.BinPackingProblemSet;
-import BinPacking.Utils.Files;
+import BinPacking.Utils.CheckpointWriter;
+import BinPacking.Utils.CoolingSchedule;
+import BinPacking.Utils.EarlyStopping;
+import BinPacking.Utils.RandomStream;
+import BinPacking.Utils.ResultWriter;
+import BinPacking.Utils.TrainingReporter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.lang.Math;
-import java.text.DecimalFormat;
 import java.util.List;
 import java.util.Random;
 
@@ -24,9 +38,24 @@ import java.util.Random;
  */
 public class SimulatedAnnealing extends HyperHeuristic {
     
+    private static final int CHECKPOINT_MAGIC = 0x53414350;
+    private static final int CHECKPOINT_VERSION = 3;
+
     private final double[][] conditions;
     private long seed;
     private int epochs;
+    private TrainingReporter reporter;
+    private RandomStream stream;
+    private double initialTemperature;
+    private CoolingSchedule cooling;
+    private EarlyStopping stopping;
+    private RolloutEvaluator rollout;
+    private boolean trackCost;
+    private double epochCost, epochMovement;
+    private long epochSteps;
+    private String checkpointFile;
+    private int checkpointInterval;
+    private boolean resume;
     public int[] freqHeuristics;
     /**
      * Creates a new instance of <code>SampleHyperHeuristic</code>.
@@ -44,6 +73,15 @@ public class SimulatedAnnealing extends HyperHeuristic {
         Random random;    
         this.seed = seed;
         this.epochs = epochs;
+        reporter = TrainingReporter.fromSystemProperties();
+        checkpointFile = getCheckpointFile(System.getProperty("binpacking.checkpoint"), seed, epochs);
+        checkpointInterval = Integer.getInteger("binpacking.checkpointInterval", 10);
+        resume = Boolean.getBoolean("binpacking.resume");
+        initialTemperature = Double.parseDouble(System.getProperty("binpacking.temperature", "10"));
+        cooling = CoolingSchedule.fromSystemProperties();
+        stopping = EarlyStopping.fromSystemProperties();
+        rollout = RolloutEvaluator.fromSystemProperties();
+        trackCost = Boolean.getBoolean("binpacking.trainingCost");
         freqHeuristics = new int[heuristics.length]; //Stores how many times heuristics are chosen
         
         //Initialize conditions
@@ -64,29 +102,40 @@ public class SimulatedAnnealing extends HyperHeuristic {
      * @return array with closest heuristic in index 0 and best in index 1
      */
     public ClosestBest getClosestBestHeuristic(BinPackingProblem problem){
+        return getClosestBestHeuristic(new BinPackingSolver(problem));
+    }
+
+    /**
+     * Returns the heuristic whose condition is the closest to the current
+     * state of a solver and the heuristic with the lowest lookahead cost in
+     * that state, with their costs. The costs are estimated by the rollout
+     * evaluator on copies of the solver, so the solver is not modified.
+     * <p>
+     * @param solver The solver in its current state.
+     * @return The closest and the best heuristics with their costs.
+     */
+    public ClosestBest getClosestBestHeuristic(BinPackingSolver solver){
         double minDistance,bestCost,closestCost;
         double distance,cost;
         Heuristic[] heuristic;
-        ClosestBest result; 
-        double[] state,solvedState;
-        BinPackingSolver solver;
+        double[] state, costs;
+        LookaheadEvent event;
         
-        solvedState = new double [features.length];
-        state = new double[features.length];
+        event = new LookaheadEvent();
+        event.begin();
         
         minDistance = Double.MAX_VALUE;
         bestCost = Double.MAX_VALUE;
         closestCost = 0;
         heuristic = new Heuristic[2];
         
-        solver = new BinPackingSolver(problem);
         state = getState(solver);
         
-        //Solve current state with every Heuristic and store solvedState
-        for (Heuristic heur : heuristics) {
-            solver.solveState(heur);
-            solvedState = getState(solver);
-            cost = solvedState[8];
+        //Evaluate every Heuristic from the current state (on copies of the solver)
+        costs = rollout.evaluate(solver, heuristics);
+        for (int i = 0; i < heuristics.length; i++) {
+            Heuristic heur = heuristics[i];
+            cost = costs[i];
             distance = getDistance(state,conditions[heur.ordinal()]);
             if (distance < minDistance) {
                 minDistance = distance;
@@ -97,26 +146,129 @@ public class SimulatedAnnealing extends HyperHeuristic {
                 bestCost = cost;
                 heuristic[1] = heur; //Min cost (best) heuristic
             }
-            solver = new BinPackingSolver(problem);
+        }
+        if (event.shouldCommit()) {
+            event.instance = solver.getName();
+            event.nbItems = solver.getItems().size();
+            event.nbCandidates = heuristics.length;
+            event.closestHeuristic = heuristic[0].toString();
+            event.bestHeuristic = heuristic[1].toString();
+            event.closestCost = closestCost;
+            event.bestCost = bestCost;
+            event.commit();
         }
         return new ClosestBest(heuristic[0],heuristic[1],closestCost,bestCost);
     }
 
+    /**
+     * Sets the evaluator used to estimate the cost of every heuristic during
+     * the training. By default, it is configured with the system properties
+     * described in {@link RolloutEvaluator#fromSystemProperties()} (a
+     * one-step lookahead unless a longer horizon is given).
+     * <p>
+     * @param rollout The evaluator used to estimate the cost of every
+     * heuristic.
+     */
+    public void setRollout(RolloutEvaluator rollout) {
+        this.rollout = rollout;
+    }
+
+    /**
+     * Sets the reporter used to show the progress of the training.
+     * <p>
+     * @param reporter The reporter used to show the progress of the training.
+     */
+    public void setReporter(TrainingReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    /**
+     * Sets where and how often the state of the training is saved. The
+     * checkpoints are written in the background, after every
+     * <code>interval</code> instances and at the end of every epoch. When
+     * resuming, the training continues from the last checkpoint saved in the
+     * file (if any) and produces exactly the same conditions as a run that was
+     * never interrupted. A checkpoint saved by a run with a different seed,
+     * number of epochs or training set is ignored and the training starts
+     * from the beginning. The default values are taken from the system
+     * properties <code>binpacking.checkpoint</code> (where the seed and the
+     * number of epochs are added to the name of the file, so several runs can
+     * share the property), <code>binpacking.checkpointInterval</code> (10 by
+     * default) and <code>binpacking.resume</code>.
+     * <p>
+     * @param fileName The file where the checkpoints are saved, or
+     * <code>null</code> to disable the checkpoints.
+     * @param interval The number of instances between two checkpoints.
+     * @param resume Whether the training continues from the last checkpoint
+     * or starts from the beginning.
+     */
+    public void setCheckpoint(String fileName, int interval, boolean resume) {
+        this.checkpointFile = fileName;
+        this.checkpointInterval = Math.max(1, interval);
+        this.resume = resume;
+    }
+
+    /**
+     * Sets the initial temperature and how it is lowered during the training.
+     * The default values are taken from the system properties
+     * <code>binpacking.temperature</code> (10 by default) and
+     * <code>binpacking.cooling</code> (linear by default).
+     * <p>
+     * @param initialTemperature The temperature at the beginning of the
+     * training.
+     * @param cooling The schedule used to update the temperature after every
+     * step.
+     */
+    public void setCooling(double initialTemperature, CoolingSchedule cooling) {
+        this.initialTemperature = initialTemperature;
+        this.cooling = cooling;
+    }
+
+    /**
+     * Sets the criterion used to stop the training before the last epoch when
+     * it stops improving. The default value is taken from the system property
+     * <code>binpacking.earlyStopping</code> (all the epochs are run by
+     * default).
+     * <p>
+     * @param stopping The criterion used to stop the training, or
+     * <code>null</code> to run all the epochs.
+     */
+    public void setEarlyStopping(EarlyStopping stopping) {
+        this.stopping = stopping;
+    }
+
+    /**
+     * Sets whether the cost (mean AVGW) of the whole training set is tracked
+     * after every move of the conditions or not. The cost is evaluated
+     * incrementally (see {@link IncrementalEvaluator}) and reported at the end
+     * of every epoch. The default value is taken from the system property
+     * <code>binpacking.trainingCost</code> (false by default).
+     * <p>
+     * @param trackCost Whether the cost of the training set is tracked or not.
+     */
+    public void setTrackCost(boolean trackCost) {
+        this.trackCost = trackCost;
+    }
+
     @Override
     public Heuristic getHeuristic(BinPackingSolver solver) {
-        double distance, minDistance;
         double[] state;
-        Heuristic heuristic;
         /*
          * Calculates the current problem state.
          */
-        state = new double[features.length];
         state = getState(solver);
         
         //for (int i = 0; i < state.length; i++) {
         //    state[i] = solver.getFeature(features[i]);
         //}
         
+        return getHeuristic(state);
+    }
+
+    @Override
+    public Heuristic getHeuristic(double[] state) {
+        double distance, minDistance;
+        Heuristic heuristic;
         /*
          * Calculates the distance from the problem state to each of the condition in the hyper-heuristic.
          */
@@ -133,6 +285,16 @@ public class SimulatedAnnealing extends HyperHeuristic {
         return heuristic;
     }
 
+    @Override
+    public HyperHeuristicModel freeze() {
+        long[] frequencies;
+        frequencies = new long[heuristics.length];
+        for (int i = 0; i < heuristics.length; i++) {
+            frequencies[i] = freqHeuristics[heuristics[i].ordinal()];
+        }
+        return new HyperHeuristicModel(features, heuristics, conditions, frequencies);
+    }
+
     @Override
     public String toString() {
         StringBuilder string;
@@ -150,27 +312,26 @@ public class SimulatedAnnealing extends HyperHeuristic {
     @Override
     public void saveCondMatrix(String fileName) {
         StringBuilder string;
-        DecimalFormat format;
-        BinPackingProblemSet set;
-        BinPackingSolver solver;
+        ResultWriter writer;
         string = new StringBuilder();
-        format = new DecimalFormat("0.0000");
         /*
          * Prints the header of the file.
          */
-        string.append("AVGL, STDL, SMALL, VSMALL, LARGE, VLARGE, COLORC, OBINS, AVGW, COLORF\n");
+        writer = new ResultWriter(fileName, "AVGL, STDL, SMALL, VSMALL, LARGE, VLARGE, COLORC, OBINS, AVGW, COLORF", false);
         /*
          * Prints conditions matrix
          */
         
         for (int i = 0; i < heuristics.length; i++) {
+            string.setLength(0);
             for (int j = 0; j < features.length; j++) {
                 string.append(conditions[i][j]).append(", ");
             }
             string.append(heuristics[i].toString()).append(", ");
-            string.append(freqHeuristics[i]).append("\n");
+            string.append(freqHeuristics[i]);
+            writer.write(string.toString());
         }
-        Files.save(string.toString().trim(), fileName);
+        writer.close();
         freqHeuristics = new int[heuristics.length]; //Stores how many times heuristics are chosen
     }
 
@@ -193,12 +354,8 @@ public class SimulatedAnnealing extends HyperHeuristic {
     }
     
     private double[] getState(BinPackingSolver solver) {
-        double[] state;
-        state = new double[features.length];
-        for(int j = 0; j< features.length; j++){
-             state[j] = solver.getFeature(features[j]);
-        }
-        return state;
+        //The features are computed once per solver state and shared with the other readers
+        return solver.getFeatures().get(features, new double[features.length]);
     } 
     
     /**
@@ -209,21 +366,68 @@ public class SimulatedAnnealing extends HyperHeuristic {
     @Override
     public double[][] train(String folder){
         BinPackingProblemSet set;
+        BinPackingProblem problem;
         ClosestBest closestBestHeuristic;
         BinPackingSolver solver;
+        EpochEvent event;
+        CheckpointWriter checkpoints;
+        TrainingState start;
+        IncrementalEvaluator evaluator;
         set = new BinPackingProblemSet(folder);
-        int numItems, totalSteps;
-        Random rand = new Random(seed);
+        int numItems, totalSteps, first, sinceCheckpoint;
+        long decisions, evaluated;
         double[] state;
-        double prob,delta,temp, initialTemp, thres;
+        double prob,delta,temp, thres, cost;
+        boolean accepted, stop;
         List<Item> items;
-        initialTemp = temp = 10; //Try between 5 and 15. 100 gives probabilities near 1 for all neighbors (not useful).
-        totalSteps = getTotalSteps(folder);
-        
+        temp = initialTemperature; //Try between 5 and 15. 100 gives probabilities near 1 for all neighbors (not useful).
+        totalSteps = getTotalSteps(set);
+        cooling.start(initialTemperature, totalSteps);
+        if (stopping != null) {
+            stopping.reset();
+        }
+        epochCost = epochMovement = 0;
+        epochSteps = 0;
+        /*
+         * The training chain draws all its random numbers from its own stream.
+         */
+        stream = RandomStream.of(seed);
+        first = 0;
+        start = null;
+        /*
+         * Restores the state saved in the last checkpoint (if any).
+         */
+        if (checkpointFile != null && resume) {
+            start = restore(CheckpointWriter.read(checkpointFile), set.size());
+        }
+        if (start != null) {
+            first = start.instance;
+            temp = start.temperature;
+            stream = start.random;
+        }
+        checkpoints = checkpointFile == null ? null : new CheckpointWriter(checkpointFile);
+        sinceCheckpoint = 0;
+        /*
+         * The cost of the training set is only re-evaluated where a move changes the decisions.
+         */
+        evaluator = trackCost ? new IncrementalEvaluator(set, features, IncrementalEvaluator.DEFAULT_INTERVAL) : null;
+        cost = evaluator == null ? 0 : evaluator.evaluate(conditions, heuristics);
+        decisions = evaluated = 0;
         
-        for(int k =0; k<epochs; k++){
-            System.out.println(temp);
-            for (BinPackingProblem problem : set.getInstances()){
+        reporter.begin();
+        for(int k = start == null ? 0 : start.epoch; k<epochs; k++){
+            reporter.startEpoch(k, temp);
+            if (first == 0) {
+                epochCost = epochMovement = 0;
+                epochSteps = 0;
+            }
+            event = new EpochEvent();
+            event.begin();
+            event.epoch = k;
+            event.nbInstances = set.size();
+            event.temperature = temp;
+            for (int p = first; p < set.size(); p++){
+                problem = set.get(p);
                 solver = new BinPackingSolver(problem);
                 items = solver.getItems();
                 while (items.size() > 1) {
@@ -231,18 +435,17 @@ public class SimulatedAnnealing extends HyperHeuristic {
                     //To see if problem states are changing (bins being packed)
                     //System.out.println(problem.getFileName() + items.size());
                     //Get closest and best heuristics with their cost
-                    closestBestHeuristic = getClosestBestHeuristic(problem);
+                    closestBestHeuristic = getClosestBestHeuristic(solver);
                     state = getState(solver);
                     //Compute acceptance probability of bringing closer closest Heur instead of Best
                     delta = closestBestHeuristic.bestCost-closestBestHeuristic.closestCost;
                     prob = Math.exp(delta/temp);
-                    System.out.println("prob: " + prob);
-                    System.out.print("closestCost: ");
-                    System.out.println(closestBestHeuristic.closestCost);
-                    System.out.print("bestCost: ");
-                    System.out.println(closestBestHeuristic.bestCost);
-                    thres = rand.nextDouble();
-                    if(thres < prob){
+                    thres = stream.nextDouble();
+                    accepted = thres < prob;
+                    reporter.step(closestBestHeuristic.closestCost, closestBestHeuristic.bestCost, prob, accepted, temp);
+                    epochCost += closestBestHeuristic.closestCost;
+                    epochSteps++;
+                    if(accepted){
                         //Move closest heuristic closer to current state, otherwise move best
                         moveHeuristic(closestBestHeuristic.closestHeur, state); //Move closest closer
                         //moveHeuristic(closestBestHeuristic.bestHeur,5); //Move best randomly (Remove if you want)
@@ -250,37 +453,230 @@ public class SimulatedAnnealing extends HyperHeuristic {
                         moveHeuristic(closestBestHeuristic.bestHeur, state); //Move best closer
                         //moveHeuristic(closestBestHeuristic.closestHeur,5); //Move closest randomly (Remove if you want)
                     }
+                    if (evaluator != null) {
+                        cost = evaluator.evaluate(conditions, heuristics);
+                        decisions += evaluator.getNbDecisions();
+                        evaluated += evaluator.getNbEvaluated();
+                    }
                     //Advance state using closest heuristic and remove item
                     solver.solveState(closestBestHeuristic.closestHeur);
-                    temp = temp - initialTemp/totalSteps;
+                    temp = cooling.next(temp, accepted);
+                }
+                if (checkpoints != null && ++sinceCheckpoint >= checkpointInterval && p + 1 < set.size()) {
+                    checkpoints.save(getCheckpoint(k, p + 1, set.size(), temp));
+                    sinceCheckpoint = 0;
+                }
+            }
+            first = 0;
+            reporter.endEpoch(temp);
+            if (evaluator != null) {
+                reporter.report("Epoch " + k + ": training set AVGW " + ResultWriter.format(cost) + " ("
+                        + ResultWriter.format(decisions == 0 ? 0 : 100.0 * evaluated / decisions) + "% of the decisions evaluated again).");
+                decisions = evaluated = 0;
+            }
+            event.commit();
+            /*
+             * Stops when the mean cost of the epoch (or the movement of the conditions) stops improving.
+             */
+            stop = stopping != null && stopping.update(epochSteps > 0 ? epochCost / epochSteps : 0, epochMovement);
+            if (checkpoints != null) {
+                checkpoints.save(getCheckpoint(stop ? epochs : k + 1, 0, set.size(), temp));
+                sinceCheckpoint = 0;
+            }
+            if (stop) {
+                reporter.report("Training stopped after epoch " + k + " (no improvement).");
+                break;
+            }
+        }
+        if (checkpoints != null) {
+            checkpoints.close();
+        }
+        reporter.finish();
+        return null;
+    }
+
+    /**
+     * Returns the name of the checkpoint file of a training run, which adds
+     * the seed and the number of epochs to a given name (before its
+     * extension).
+     * <p>
+     * @param fileName The name given, or <code>null</code>.
+     * @param seed The seed of the run.
+     * @param epochs The number of epochs of the run.
+     * @return The name of the checkpoint file of the run, or
+     * <code>null</code> if no name is given.
+     */
+    private static String getCheckpointFile(String fileName, long seed, int epochs) {
+        int dot;
+        if (fileName == null) {
+            return null;
+        }
+        dot = fileName.lastIndexOf('.');
+        if (dot <= Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'))) {
+            dot = fileName.length();
+        }
+        return fileName.substring(0, dot) + "_" + seed + "_" + epochs + fileName.substring(dot);
+    }
+
+    /**
+     * Returns a snapshot of the state of the training: the position in the
+     * training set, the temperature, the state of the random number generator,
+     * the conditions and the frequencies of the heuristics.
+     * <p>
+     * @param epoch The epoch where the training continues.
+     * @param instance The instance where the training continues.
+     * @param nbInstances The number of instances in the training set.
+     * @param temperature The current temperature.
+     * @return A snapshot of the state of the training.
+     */
+    private byte[] getCheckpoint(int epoch, int instance, int nbInstances, double temperature) {
+        ByteArrayOutputStream bytes;
+        DataOutputStream out;
+        bytes = new ByteArrayOutputStream();
+        out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(seed);
+            out.writeInt(epochs);
+            out.writeInt(nbInstances);
+            out.writeInt(features.length);
+            out.writeInt(heuristics.length);
+            out.writeInt(epoch);
+            out.writeInt(instance);
+            out.writeDouble(temperature);
+            for (double[] condition : conditions) {
+                for (double value : condition) {
+                    out.writeDouble(value);
                 }
             }
+            for (int frequency : freqHeuristics) {
+                out.writeInt(frequency);
+            }
+            out.writeDouble(epochCost);
+            out.writeDouble(epochMovement);
+            out.writeLong(epochSteps);
+            writeState(out, cooling.getState());
+            writeState(out, stopping == null ? new double[0] : stopping.getState());
+            out.writeLong(stream.getState());
+            out.writeLong(stream.getGamma());
+            out.close();
+        } catch (IOException e) {
+            /*
+             * Never happens when writing to memory.
+             */
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores the conditions and the frequencies of the heuristics saved in a
+     * checkpoint and returns the rest of the state of the training.
+     * <p>
+     * @param snapshot The contents of the checkpoint, or <code>null</code> if
+     * there is no checkpoint.
+     * @param nbInstances The number of instances in the training set.
+     * @return The state of the training, or <code>null</code> if there is no
+     * checkpoint.
+     */
+    private TrainingState restore(byte[] snapshot, int nbInstances) {
+        double[] tmp;
+        DataInputStream in;
+        TrainingState state;
+        if (snapshot == null) {
+            return null;
+        }
+        in = new DataInputStream(new ByteArrayInputStream(snapshot));
+        try {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION
+                    || in.readLong() != seed || in.readInt() != epochs || in.readInt() != nbInstances
+                    || in.readInt() != features.length || in.readInt() != heuristics.length) {
+                System.out.println("The checkpoint \'" + checkpointFile + "\' does not belong to this training run and will be ignored.");
+                return null;
+            }
+            state = new TrainingState();
+            state.epoch = in.readInt();
+            state.instance = in.readInt();
+            state.temperature = in.readDouble();
+            for (double[] condition : conditions) {
+                for (int j = 0; j < condition.length; j++) {
+                    condition[j] = in.readDouble();
+                }
+            }
+            for (int i = 0; i < freqHeuristics.length; i++) {
+                freqHeuristics[i] = in.readInt();
+            }
+            epochCost = in.readDouble();
+            epochMovement = in.readDouble();
+            epochSteps = in.readLong();
+            cooling.setState(readState(in));
+            tmp = readState(in);
+            if (stopping != null && tmp.length > 0) {
+                stopping.setState(tmp);
+            }
+            state.random = RandomStream.restore(in.readLong(), in.readLong());
+            return state;
+        } catch (IOException e) {
+            System.out.println("An error occurred while attempting to read the file \'" + checkpointFile + "\'.");
+            System.out.println("Exception: " + e.toString());
+            System.out.println("The system will halt.");
+            System.exit(1);
         }
         return null;
     }
 
     private void moveHeuristic(Heuristic heuristic, double[] state) {
-        double[] diffVec = new double[features.length];
-        Random rand = new Random(seed);
+        double diff, value, moved;
+        double[] condition = conditions[heuristic.ordinal()];
+        moved = 0;
         for(int i=0; i<features.length; i++){
-            diffVec[i] = state[i] - conditions[heuristic.ordinal()][i];
-            conditions[heuristic.ordinal()][i] =+ rand.nextDouble()*diffVec[i];
+            diff = state[i] - condition[i];
+            value = stream.nextDouble()*diff;
+            moved += value * value;
+            condition[i] += value;
         }
+        epochMovement += Math.sqrt(moved);
     }
     
     private void moveHeuristic(Heuristic heuristic, double step) {
-        double[] diffVec = new double[features.length];
-        Random rand = new Random(seed);
+        double[] condition = conditions[heuristic.ordinal()];
         for(int i=0; i<features.length; i++){
-            conditions[heuristic.ordinal()][i] =+ step*(-1 + 2*rand.nextDouble());
+            condition[i] += step*(-1 + 2*stream.nextDouble());
         }
     }
     
-    private int getTotalSteps(String folder){
+    private static void writeState(DataOutputStream out, double[] state) throws IOException {
+        out.writeInt(state.length);
+        for (double value : state) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static double[] readState(DataInputStream in) throws IOException {
+        double[] state;
+        state = new double[in.readInt()];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = in.readDouble();
+        }
+        return state;
+    }
+
+    /**
+     * The position, temperature and random number generator of a training run
+     * restored from a checkpoint.
+     */
+    private static class TrainingState {
+
+        private int epoch;
+        private int instance;
+        private double temperature;
+        private RandomStream random;
+    }
+
+    private int getTotalSteps(BinPackingProblemSet set){
         int totalSteps = 0;
-        BinPackingProblemSet set;
-        set = new BinPackingProblemSet(folder);
-        for (BinPackingProblem problem : set.getInstances()){
+        for (BinPackingProblem problem : set){
             totalSteps+= problem.getNbItems();
         }
         return totalSteps*epochs;